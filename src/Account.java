@@ -1,60 +1,175 @@
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 
+/**
+ * Base account. Several threads (teller sessions, batch jobs) may work on the same account:
+ * the balance is an AtomicLong of thebe changed only by compare-and-set loops, with the
+ * subclass withdrawal limits checked against the exact balance being replaced, and the
+ * history is a concurrent append-only deque.
+ *
+ * Every change is stored as one ledger event (see LedgerEvent) numbered from the account's own
+ * sequence; the stored balance is not rewritten. On load the balance is rebuilt by replayEvents.
+ *
+ * Shared stores: when other processes post to the same stored accounts, the balance here is only
+ * a copy. Changes and limit checks are made on the stored balance by the store (see
+ * BankStore.adjustBalance), and the result is taken as the copy's new balance.
+ */
 public abstract class Account {
     protected String accountNumber;
     protected String branch;
     protected Customer customer;
-    protected double balance;
-    protected List<Transaction> transactions = new ArrayList<>();
+    private final AtomicLong balance = new AtomicLong(); // thebe
+    private final AtomicLong eventSequence = new AtomicLong(); // number of the last event given out
+    private final Object sharedBalanceLock = new Object();      // orders copies of a shared stored balance
+    protected final ConcurrentLinkedDeque<Transaction> transactions = new ConcurrentLinkedDeque<>();
     protected static final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
+    // Returned by tryDebit when the account's limits refuse the withdrawal
+    protected static final long REFUSED = Long.MIN_VALUE;
+
     public Account(String accountNumber, String branch, Customer customer) {
         this.accountNumber = accountNumber;
         this.branch = branch;
         this.customer = customer;
-        this.balance = 0.0;
     }
 
-    // Additional constructor for loading existing accounts
-    public Account(String accountNumber, Customer customer, double balance) {
+    // Additional constructor for loading existing accounts; balance is in thebe
+    public Account(String accountNumber, Customer customer, long balance) {
         this.accountNumber = accountNumber;
         this.customer = customer;
-        this.balance = balance;
+        this.balance.set(balance);
         this.branch = "Main Branch"; // default
     }
 
     public String getAccountNumber() { return accountNumber; }
     public String getBranch() { return branch; }
     public Customer getCustomer() { return customer; }
-    public double getBalance() { return balance; }
-    public List<Transaction> getTransactions() { return transactions; }
+    public double getBalance() { return Money.toPula(getBalanceThebe()); }
+
+    public long getBalanceThebe() { return balance.get(); }
+
+    /**
+     * A copy of the history, oldest first
+     */
+    public List<Transaction> getTransactions() { return new ArrayList<>(transactions); }
 
     public void setBranch(String branch) { this.branch = branch; }
-    public void setBalance(double balance) { this.balance = balance; }
+    public void setBalance(double balance) { setBalanceThebe(Money.ofPula(balance)); }
+
+    // Not for use while other threads change the balance
+    public void setBalanceThebe(long balance) {
+        this.balance.set(balance);
+    }
+
+    void setTransactions(List<Transaction> transactions) {
+        this.transactions.clear();
+        this.transactions.addAll(transactions);
+    }
+
+    // ---------------- CONCURRENT BALANCE CORE ----------------
+
+    /**
+     * Add a signed amount to the balance unconditionally. Returns the new balance.
+     */
+    protected final long addToBalance(long amount) {
+        if (BankStores.get().isShared()) {
+            long stored = adjustShared(amount, null);
+            if (stored != BankStore.BALANCE_NOT_STORED) {
+                return stored;
+            }
+        }
+        while (true) {
+            long current = balance.get();
+            long next = Money.add(current, amount);
+            if (balance.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Take an amount from the balance if canWithdraw allows it for the balance being replaced.
+     * Returns the new balance, or REFUSED.
+     */
+    protected final long tryDebit(long amount) {
+        if (BankStores.get().isShared()) {
+            long stored = adjustShared(Money.negate(amount), balance -> canWithdraw(balance, amount));
+            if (stored != BankStore.BALANCE_NOT_STORED) {
+                return stored == BankStore.BALANCE_REFUSED ? REFUSED : stored;
+            }
+        }
+        while (true) {
+            long current = balance.get();
+            if (!canWithdraw(current, amount)) {
+                return REFUSED;
+            }
+            long next = Money.subtract(current, amount);
+            if (balance.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Change the stored balance of a shared store and take the result as this copy's balance.
+     * Returns BankStore.BALANCE_NOT_STORED for an account not stored yet, which keeps its balance
+     * here until it is saved.
+     */
+    private long adjustShared(long amount, LongPredicate allowed) {
+        // Copies are taken in the order the stored balance changed, so an older one never wins
+        synchronized (sharedBalanceLock) {
+            long stored = BankStores.get().adjustBalance(accountNumber, amount, allowed);
+            if (stored != BankStore.BALANCE_NOT_STORED && stored != BankStore.BALANCE_REFUSED) {
+                setBalanceThebe(stored);
+            }
+            return stored;
+        }
+    }
+
+    /**
+     * Take the stored balance of a shared store after another process changed it
+     */
+    public void refreshSharedBalance() {
+        if (BankStores.get().isShared()) {
+            adjustShared(0, null);
+        }
+    }
 
     // ---------------- ACCOUNT OPERATIONS ----------------
     public boolean deposit(double amount, String description) {
-        if (amount <= 0) return false;
+        return credit(LedgerEvent.DEPOSITED, Money.ofPula(amount), description);
+    }
 
-        balance += amount;
-        Transaction transaction = new Transaction(
+    /**
+     * Add an amount in thebe to the balance and store it as the given event
+     */
+    protected boolean credit(LedgerEvent event, long thebe, String description) {
+        if (thebe <= 0) return false;
+
+        long newBalance = addToBalance(thebe);
+        Transaction transaction = newEvent(
+                event,
                 LocalDate.now().format(dateFormatter),
                 description,
-                amount,
+                thebe,
                 "DEPOSIT",
-                balance
+                newBalance
         );
 
         addTransaction(transaction);
 
-        // Save transaction to file and update account balance
+        // The event is the only write; the balance is rebuilt from events on load
         transaction.saveTransaction(this.accountNumber);
-        updateAccountBalance();
 
-        System.out.println("Deposit successful: " + amount + " to account " + accountNumber);
+        System.out.println("Deposit successful: " + Money.format(thebe) + " to account " + accountNumber);
         return true;
     }
 
@@ -64,24 +179,25 @@ public abstract class Account {
     }
 
     public boolean withdraw(double amount, String description) {
-        if (!canWithdraw(amount)) return false;
+        long thebe = Money.ofPula(amount);
+        long newBalance = tryDebit(thebe);
+        if (newBalance == REFUSED) return false;
 
-        balance -= amount;
-        Transaction transaction = new Transaction(
+        Transaction transaction = newEvent(
+                LedgerEvent.WITHDRAWN,
                 LocalDate.now().format(dateFormatter),
                 description,
-                amount,
+                thebe,
                 "WITHDRAWAL",
-                balance
+                newBalance
         );
 
         addTransaction(transaction);
 
-        // Save transaction to file and update account balance
+        // The event is the only write; the balance is rebuilt from events on load
         transaction.saveTransaction(this.accountNumber);
-        updateAccountBalance();
 
-        System.out.println("Withdrawal successful: " + amount + " from account " + accountNumber);
+        System.out.println("Withdrawal successful: " + Money.format(thebe) + " from account " + accountNumber);
         return true;
     }
 
@@ -92,26 +208,82 @@ public abstract class Account {
 
     // File-based save method
     public void saveAccount(String customerID) {
-        FileManager.saveAccount(this, customerID);
+        BankStores.get().saveAccount(this, customerID);
         System.out.println("Account saved to file: " + this.accountNumber);
     }
 
-    // Update account balance in file
-    protected void updateAccountBalance() {
-        FileManager.updateAccountBalance(this.accountNumber, this.balance);
+    // ---------------- LEDGER EVENTS ----------------
+
+    /**
+     * A history row for a change to this account, numbered with the account's next event sequence
+     */
+    Transaction newEvent(LedgerEvent event, String date, String description, long amount, String type, long balance) {
+        return Transaction.ofEvent(event, eventSequence.incrementAndGet(), date, description, amount, type, balance);
     }
 
-    // Load transactions from file
+    /**
+     * Add the account's opening event to its history and return it for storing. New accounts open
+     * at zero; accounts stored before events were numbered open with their stored balance.
+     */
+    Transaction openingEvent(long openingBalance, String description) {
+        Transaction opened = newEvent(LedgerEvent.ACCOUNT_OPENED, LocalDate.now().format(dateFormatter),
+                description, openingBalance, "OPENED", openingBalance);
+        addTransaction(opened);
+        return opened;
+    }
+
+    /**
+     * Take the stored history and rebuild the balance by replaying its events in sequence order.
+     * Returns false, keeping the stored balance, when the history has no numbered events yet.
+     */
+    boolean replayEvents(List<Transaction> history) {
+        List<Transaction> ordered = new ArrayList<>(history);
+        // Concurrent writers may store events out of order; unnumbered rows stay first, as stored
+        ordered.sort(Comparator.comparingLong(Transaction::getSequence));
+        long projected = 0;
+        long last = 0;
+        long missing = 0;
+        for (Transaction event : ordered) {
+            if (event.getSequence() == 0) continue;
+            if (event.getEvent() == LedgerEvent.ACCOUNT_OPENED) {
+                projected = event.getAmountThebe();
+            } else {
+                projected = Money.add(projected, event.getBalanceChangeThebe());
+            }
+            missing += Math.max(0, event.getSequence() - last - 1);
+            last = event.getSequence();
+        }
+        setTransactions(ordered);
+        if (last == 0) {
+            return false;
+        }
+        if (missing > 0) {
+            System.out.println("Account " + accountNumber + ": " + missing + " events missing from the store");
+        }
+        eventSequence.set(last);
+        setBalanceThebe(projected);
+        return true;
+    }
+
+    // Load transactions from file and rebuild the balance from them
     public void loadTransactions() {
-        this.transactions = FileManager.loadTransactionsForAccount(this.accountNumber);
+        replayEvents(BankStores.get().loadTransactionsForAccount(this.accountNumber));
         System.out.println("Loaded " + this.transactions.size() + " transactions for account: " + this.accountNumber);
     }
 
     // Abstract method for account info display
     public abstract void displayAccountInfo();
 
-    // Methods to support ChequeAccount and Investment overrides
-    protected boolean canWithdraw(double amount) {
+    // Methods to support ChequeAccount and Investment overrides; amounts are in thebe
+    protected final boolean canWithdraw(long amount) {
+        return canWithdraw(getBalanceThebe(), amount);
+    }
+
+    /**
+     * Whether the limits allow taking the amount from the given balance. Called inside the
+     * compare-and-set loop, so it must only look at its arguments and fixed settings.
+     */
+    protected boolean canWithdraw(long balance, long amount) {
         return amount > 0 && amount <= balance;
     }
 
@@ -130,12 +302,17 @@ public abstract class Account {
 
     // Get account summary for display
     public String getAccountSummary() {
-        return String.format("%s - %s: $%.2f", accountNumber, getAccountType(), balance);
+        return String.format("%s - %s: $%s", accountNumber, getAccountType(), Money.format(getBalanceThebe()));
     }
 
-    // Get recent transactions
+    // Get recent transactions, oldest first
     public List<Transaction> getRecentTransactions(int count) {
-        int startIndex = Math.max(0, transactions.size() - count);
-        return transactions.subList(startIndex, transactions.size());
+        List<Transaction> recent = new ArrayList<>(count);
+        Iterator<Transaction> newestFirst = transactions.descendingIterator();
+        while (recent.size() < count && newestFirst.hasNext()) {
+            recent.add(newestFirst.next());
+        }
+        Collections.reverse(recent);
+        return recent;
     }
 }
\ No newline at end of file
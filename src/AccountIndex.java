@@ -0,0 +1,65 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Every open account in memory, keyed by account number, with its owning customer.
+ * Built by the loader and kept current by Main when accounts are opened and closed,
+ * so resolving an account or its owner is one hash lookup and never reads the files.
+ */
+public class AccountIndex {
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private final Map<String, Customer> owners = new ConcurrentHashMap<>();
+
+    /**
+     * Index every account of the given customers
+     */
+    public static AccountIndex build(Collection<Customer> customers) {
+        AccountIndex index = new AccountIndex();
+        for (Customer customer : customers) {
+            for (Account account : customer.getAccounts()) {
+                index.put(account, customer);
+            }
+        }
+        return index;
+    }
+
+    public void put(Account account, Customer owner) {
+        accounts.put(account.getAccountNumber(), account);
+        owners.put(account.getAccountNumber(), owner);
+    }
+
+    public Account getAccount(String accountNumber) {
+        return accountNumber == null ? null : accounts.get(accountNumber);
+    }
+
+    public Customer getOwner(String accountNumber) {
+        return accountNumber == null ? null : owners.get(accountNumber);
+    }
+
+    public boolean contains(String accountNumber) {
+        return accountNumber != null && accounts.containsKey(accountNumber);
+    }
+
+    public void remove(String accountNumber) {
+        accounts.remove(accountNumber);
+        owners.remove(accountNumber);
+    }
+
+    /**
+     * Drop every account the customer holds
+     */
+    public void removeCustomer(Customer customer) {
+        for (Account account : customer.getAccounts()) {
+            remove(account.getAccountNumber());
+        }
+    }
+
+    public void clear() {
+        accounts.clear();
+        owners.clear();
+    }
+
+    public int size() {
+        return accounts.size();
+    }
+}
@@ -0,0 +1,584 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.function.LongPredicate;
+
+/**
+ * Memory-mapped account store made of fixed-width records.
+ * Each account lives in its own slot, so changing one account is a single in-place write
+ * instead of a rewrite of the whole accounts file.
+ *
+ * A table opened with a change sequence is shared with other processes. Each slot is a byte range
+ * of the file that is locked while a balance is read, checked and written, so processes posting
+ * to different accounts never wait for each other. Slots are allocated under a lock on the header.
+ * Every change is published to the change sequence, from which the other processes learn which
+ * slots to look at again instead of re-reading the table.
+ */
+public class AccountTable {
+    private static final int MAGIC = 0x41435442; // "ACTB"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int STRIPES = 64;
+
+    // Returned by adjustBalance
+    public static final long REFUSED = Long.MIN_VALUE;
+    public static final long MISSING = Long.MIN_VALUE + 1;
+
+    // Record layout (offsets inside a slot)
+    static final int RECORD_SIZE = 256;
+    private static final int STATUS_OFFSET = 0;
+    private static final int ACCOUNT_NUMBER_OFFSET = 1;
+    private static final int ACCOUNT_NUMBER_WIDTH = 32;
+    private static final int CUSTOMER_ID_OFFSET = ACCOUNT_NUMBER_OFFSET + ACCOUNT_NUMBER_WIDTH;
+    private static final int CUSTOMER_ID_WIDTH = 32;
+    private static final int TYPE_OFFSET = CUSTOMER_ID_OFFSET + CUSTOMER_ID_WIDTH;
+    private static final int TYPE_WIDTH = 16;
+    private static final int BALANCE_OFFSET = TYPE_OFFSET + TYPE_WIDTH;
+    private static final int UPDATED_OFFSET = BALANCE_OFFSET + 8;
+    private static final int BRANCH_OFFSET = UPDATED_OFFSET + 8;
+    private static final int BRANCH_WIDTH = 48;
+    private static final int EXTRA_OFFSET = BRANCH_OFFSET + BRANCH_WIDTH;
+    private static final int EXTRA_WIDTH = RECORD_SIZE - EXTRA_OFFSET;
+
+    private static final byte SLOT_EMPTY = 0;
+    private static final byte SLOT_LIVE = 1;
+    private static final byte SLOT_DELETED = 2;
+
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private volatile MappedByteBuffer buffer; // replaced when the table grows; balances are read outside the lock
+    private int capacity;
+    private int highWater; // number of slots ever used
+    private final Map<String, Integer> slotIndex = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+
+    // Shared tables only
+    private final ChangeSequence changes;
+    private final Object[] stripes = new Object[STRIPES]; // one thread per slot may hold its byte range
+    private long seenChange;
+    private boolean missedChanges;
+    private final Set<String> changedElsewhere = new LinkedHashSet<>();
+
+    public AccountTable(String path) throws IOException {
+        this(path, null);
+    }
+
+    /**
+     * Open the table; with a change sequence path it is shared with other processes
+     */
+    public AccountTable(String path, String changeSequencePath) throws IOException {
+        this.file = new File(path);
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = raf.getChannel();
+        this.changes = changeSequencePath != null ? new ChangeSequence(changeSequencePath) : null;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+
+        try (FileLock ignored = lockHeader()) {
+            if (changes != null) {
+                seenChange = changes.next();
+            }
+            if (raf.length() >= HEADER_SIZE) {
+                readHeader();
+                rebuildIndex();
+            } else {
+                capacity = INITIAL_CAPACITY;
+                highWater = 0;
+                map();
+                writeHeader();
+            }
+        }
+        System.out.println("Account table opened: " + path + " (" + slotIndex.size() + " accounts"
+                + (changes != null ? ", shared" : "") + ")");
+    }
+
+    // ---------------- MAPPING AND HEADER ----------------
+
+    private void map() throws IOException {
+        long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private void readHeader() throws IOException {
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not an account table: " + file.getPath());
+        }
+        int version = header.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported account table version " + version + " in " + file.getPath());
+        }
+        if (header.getInt(8) != RECORD_SIZE) {
+            throw new IOException("Unexpected record size in " + file.getPath());
+        }
+        capacity = header.getInt(12);
+        highWater = header.getInt(16);
+        map();
+    }
+
+    private void writeHeader() {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, RECORD_SIZE);
+        buffer.putInt(12, capacity);
+        buffer.putInt(16, highWater);
+    }
+
+    private void rebuildIndex() {
+        slotIndex.clear();
+        freeSlots.clear();
+        for (int slot = 0; slot < highWater; slot++) {
+            byte status = buffer.get(slotOffset(slot) + STATUS_OFFSET);
+            if (status == SLOT_LIVE) {
+                slotIndex.put(readString(slot, ACCOUNT_NUMBER_OFFSET), slot);
+            } else {
+                freeSlots.add(slot);
+            }
+        }
+    }
+
+    private void grow() throws IOException {
+        buffer.force();
+        capacity *= 2;
+        map();
+        writeHeader();
+        System.out.println("Account table grown to " + capacity + " slots");
+    }
+
+    private static int slotOffset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    // ---------------- SHARING ----------------
+
+    // Null for a table that is not shared; the header lock serializes slot allocation across processes
+    private FileLock lockHeader() throws IOException {
+        return changes != null ? channel.lock(0, HEADER_SIZE, false) : null;
+    }
+
+    // Callers hold the slot's stripe, so this process never asks for a range it already holds
+    private FileLock lockRecord(int slot) throws IOException {
+        return changes != null ? channel.lock(slotOffset(slot), RECORD_SIZE, false) : null;
+    }
+
+    private Object stripe(int slot) {
+        return stripes[slot % STRIPES];
+    }
+
+    private void publish(int slot) {
+        if (changes != null) {
+            changes.publish(slot);
+        }
+    }
+
+    /**
+     * Take in the slots other processes added, reused or deleted since we last looked
+     */
+    private void catchUp() {
+        if (changes == null || changes.next() == seenChange) return;
+
+        int sharedCapacity = buffer.getInt(12);
+        if (sharedCapacity > capacity) {
+            capacity = sharedCapacity;
+            try {
+                map();
+            } catch (IOException e) {
+                System.err.println("Error remapping account table: " + e.getMessage());
+                return;
+            }
+        }
+        highWater = Math.max(highWater, buffer.getInt(16));
+
+        long next = changes.read(seenChange, (slot, ownChange) -> {
+            if (slot >= highWater) return;
+            String accountNumber = readString(slot, ACCOUNT_NUMBER_OFFSET);
+            if (buffer.get(slotOffset(slot) + STATUS_OFFSET) == SLOT_LIVE) {
+                slotIndex.put(accountNumber, slot);
+            } else {
+                slotIndex.remove(accountNumber, slot);
+                freeSlots.add(slot);
+            }
+            if (!ownChange) {
+                changedElsewhere.add(accountNumber);
+            }
+        });
+        if (next == ChangeSequence.OVERRUN) {
+            System.out.println("Account table: missed changes from other processes, re-reading all slots");
+            seenChange = changes.next();
+            rebuildIndex();
+            missedChanges = true;
+        } else {
+            seenChange = next;
+        }
+    }
+
+    private boolean holds(int slot, String accountNumber) {
+        return buffer.get(slotOffset(slot) + STATUS_OFFSET) == SLOT_LIVE
+                && readString(slot, ACCOUNT_NUMBER_OFFSET).equals(accountNumber);
+    }
+
+    /**
+     * The slot of an account, or null. In a shared table the index is brought up to date first,
+     * and a slot that another process has since given to a different account is not returned.
+     */
+    private Integer slotOf(String accountNumber) {
+        catchUp();
+        Integer slot = slotIndex.get(accountNumber);
+        if (slot != null && changes != null && !holds(slot, accountNumber)) {
+            slotIndex.remove(accountNumber);
+            return null;
+        }
+        return slot;
+    }
+
+    private boolean isCurrent(int slot, String accountNumber) {
+        return changes == null || holds(slot, accountNumber);
+    }
+
+    // A freed slot may have been reused by another process since it was freed here
+    private int allocateSlot() throws IOException {
+        while (!freeSlots.isEmpty()) {
+            int slot = freeSlots.poll();
+            if (buffer.get(slotOffset(slot) + STATUS_OFFSET) != SLOT_LIVE) {
+                return slot;
+            }
+        }
+        if (highWater >= capacity) {
+            grow();
+        }
+        int slot = highWater++;
+        writeHeader();
+        return slot;
+    }
+
+    /**
+     * Account numbers whose records other processes changed since the last call, or null if
+     * changes were missed and every account should be re-read. Empty for a table that is not shared.
+     */
+    public synchronized Set<String> takeChangesElsewhere() {
+        catchUp();
+        if (missedChanges) {
+            missedChanges = false;
+            changedElsewhere.clear();
+            return null;
+        }
+        Set<String> taken = new LinkedHashSet<>(changedElsewhere);
+        changedElsewhere.clear();
+        return taken;
+    }
+
+    public boolean isShared() {
+        return changes != null;
+    }
+
+    // ---------------- FIELD ENCODING ----------------
+
+    // Strings are stored as a length byte followed by UTF-8 bytes, truncated to the field width
+    private void writeString(int slot, int offset, int width, String value) {
+        byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, width - 1);
+        if (length < bytes.length) {
+            System.out.println("Account table: value truncated to " + length + " bytes: " + value);
+        }
+        int base = slotOffset(slot) + offset;
+        buffer.put(base, (byte) length);
+        for (int i = 0; i < length; i++) {
+            buffer.put(base + 1 + i, bytes[i]);
+        }
+        for (int i = length; i < width - 1; i++) {
+            buffer.put(base + 1 + i, (byte) 0);
+        }
+    }
+
+    private String readString(int slot, int offset) {
+        int base = slotOffset(slot) + offset;
+        int length = buffer.get(base) & 0xFF;
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(base + 1 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void writeRecord(int slot, FileManager.AccountData data, long updatedMillis) {
+        int base = slotOffset(slot);
+        writeString(slot, ACCOUNT_NUMBER_OFFSET, ACCOUNT_NUMBER_WIDTH, data.accountNumber);
+        writeString(slot, CUSTOMER_ID_OFFSET, CUSTOMER_ID_WIDTH, data.customerID);
+        writeString(slot, TYPE_OFFSET, TYPE_WIDTH, data.accountType);
+        buffer.putLong(base + BALANCE_OFFSET, data.balance);
+        buffer.putLong(base + UPDATED_OFFSET, updatedMillis);
+        writeString(slot, BRANCH_OFFSET, BRANCH_WIDTH, data.branch);
+        writeString(slot, EXTRA_OFFSET, EXTRA_WIDTH, data.extraData);
+        // Status goes last so a half-written slot is never seen as live
+        buffer.put(base + STATUS_OFFSET, SLOT_LIVE);
+    }
+
+    private FileManager.AccountData readRecord(int slot) {
+        int base = slotOffset(slot);
+        return new FileManager.AccountData(
+                readString(slot, ACCOUNT_NUMBER_OFFSET),
+                readString(slot, CUSTOMER_ID_OFFSET),
+                readString(slot, TYPE_OFFSET),
+                buffer.getLong(base + BALANCE_OFFSET),
+                readString(slot, BRANCH_OFFSET),
+                readString(slot, EXTRA_OFFSET)
+        );
+    }
+
+    // ---------------- ACCOUNT OPERATIONS ----------------
+
+    /**
+     * Insert a new account or overwrite the existing slot for the same account number
+     */
+    public synchronized void put(FileManager.AccountData data) throws IOException {
+        Integer slot = slotOf(data.accountNumber);
+        if (slot == null) {
+            try (FileLock ignored = lockHeader()) {
+                slot = slotOf(data.accountNumber); // another process may have added it meanwhile
+                if (slot == null) {
+                    slot = allocateSlot();
+                    slotIndex.put(data.accountNumber, slot);
+                    writeRecord(slot, data, System.currentTimeMillis());
+                    publish(slot);
+                    return;
+                }
+            }
+        }
+        synchronized (stripe(slot)) {
+            try (FileLock ignored = lockRecord(slot)) {
+                if (changes != null) {
+                    // In a shared table balances only change through adjustBalance
+                    data = new FileManager.AccountData(data.accountNumber, data.customerID, data.accountType,
+                            buffer.getLong(slotOffset(slot) + BALANCE_OFFSET), data.branch, data.extraData);
+                }
+                writeRecord(slot, data, System.currentTimeMillis());
+                publish(slot);
+            }
+        }
+    }
+
+    /**
+     * Add a signed amount to an account's balance in place if allowed (null for always) accepts
+     * the balance it would replace. Returns the new balance, REFUSED, or MISSING if the account is
+     * not in the table; an amount of zero only reads the balance. Only the account's slot is
+     * locked, so postings to other accounts, from this process or another, go ahead meanwhile.
+     */
+    public long adjustBalance(String accountNumber, long amount, LongPredicate allowed) throws IOException {
+        while (true) {
+            int slot;
+            synchronized (this) {
+                Integer found = slotOf(accountNumber);
+                if (found == null) {
+                    return MISSING;
+                }
+                slot = found;
+            }
+            synchronized (stripe(slot)) {
+                try (FileLock ignored = lockRecord(slot)) {
+                    if (!holds(slot, accountNumber)) {
+                        continue; // deleted or moved by another process while we waited for the lock
+                    }
+                    int base = slotOffset(slot);
+                    long current = buffer.getLong(base + BALANCE_OFFSET);
+                    if (amount == 0) {
+                        return current;
+                    }
+                    if (allowed != null && !allowed.test(current)) {
+                        return REFUSED;
+                    }
+                    long next = Money.add(current, amount);
+                    buffer.putLong(base + BALANCE_OFFSET, next);
+                    buffer.putLong(base + UPDATED_OFFSET, System.currentTimeMillis());
+                    publish(slot);
+                    return next;
+                }
+            }
+        }
+    }
+
+    public synchronized FileManager.AccountData get(String accountNumber) {
+        Integer slot = slotOf(accountNumber);
+        return slot != null ? readRecord(slot) : null;
+    }
+
+    public synchronized boolean contains(String accountNumber) {
+        return slotOf(accountNumber) != null;
+    }
+
+    public synchronized int size() {
+        catchUp();
+        return slotIndex.size();
+    }
+
+    public synchronized boolean remove(String accountNumber) {
+        Integer slot = slotOf(accountNumber);
+        if (slot == null) {
+            return false;
+        }
+        synchronized (stripe(slot)) {
+            try (FileLock ignored = lockRecord(slot)) {
+                buffer.put(slotOffset(slot) + STATUS_OFFSET, SLOT_DELETED);
+            } catch (IOException e) {
+                System.err.println("Error locking account table record: " + e.getMessage());
+                return false;
+            }
+        }
+        slotIndex.remove(accountNumber);
+        freeSlots.add(slot);
+        publish(slot);
+        return true;
+    }
+
+    /**
+     * Remove every account owned by a customer and return their account numbers
+     */
+    public synchronized List<String> removeByCustomer(String customerID) {
+        catchUp();
+        List<String> removed = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : slotIndex.entrySet()) {
+            if (isCurrent(entry.getValue(), entry.getKey())
+                    && readString(entry.getValue(), CUSTOMER_ID_OFFSET).equals(customerID)) {
+                removed.add(entry.getKey());
+            }
+        }
+        for (String accountNumber : removed) {
+            remove(accountNumber);
+        }
+        return removed;
+    }
+
+    /**
+     * Load the live accounts owned by one customer
+     */
+    public synchronized List<FileManager.AccountData> loadByCustomer(String customerID) {
+        catchUp();
+        List<FileManager.AccountData> accounts = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : slotIndex.entrySet()) {
+            int slot = entry.getValue();
+            if (isCurrent(slot, entry.getKey()) && readString(slot, CUSTOMER_ID_OFFSET).equals(customerID)) {
+                accounts.add(readRecord(slot));
+            }
+        }
+        return accounts;
+    }
+
+    /**
+     * Load all live accounts in slot order
+     */
+    public synchronized List<FileManager.AccountData> loadAll() {
+        catchUp();
+        List<FileManager.AccountData> accounts = new ArrayList<>(slotIndex.size());
+        for (int slot = 0; slot < highWater; slot++) {
+            if (buffer.get(slotOffset(slot) + STATUS_OFFSET) == SLOT_LIVE) {
+                accounts.add(readRecord(slot));
+            }
+        }
+        return accounts;
+    }
+
+    // ---------------- IMPORT / EXPORT ----------------
+
+    /**
+     * Import accounts from the pipe-delimited accounts file
+     */
+    public synchronized int importFromText(File textFile) throws IOException {
+        if (!textFile.exists()) {
+            return 0;
+        }
+        int count = 0;
+        RecordTokenizer records = RecordTokenizer.open(textFile.toPath());
+        while (records.next()) {
+            if (KeyedLogFile.isTombstone(records)) {
+                if (remove(records.field(0))) count--;
+            } else if (records.fieldCount() >= 6) {
+                boolean replacing = contains(records.field(0));
+                FileManager.AccountData data = new FileManager.AccountData(records.field(0), records.field(1),
+                        records.field(2), records.moneyField(3), records.field(4), records.field(5));
+                put(data);
+                if (records.fieldCount() >= 7) {
+                    setUpdated(data.accountNumber, records.field(6));
+                }
+                if (!replacing) count++;
+            }
+        }
+        buffer.force();
+        System.out.println("Imported " + count + " accounts into account table.");
+        return count;
+    }
+
+    private void setUpdated(String accountNumber, String timestamp) {
+        try {
+            long millis = LocalDateTime.parse(timestamp, formatter)
+                    .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            buffer.putLong(slotOffset(slotIndex.get(accountNumber)) + UPDATED_OFFSET, millis);
+        } catch (Exception e) {
+            // Keep the import time if the timestamp cannot be parsed
+        }
+    }
+
+    /**
+     * Export all accounts to the pipe-delimited accounts file format
+     */
+    public synchronized int exportToText(File textFile) throws IOException {
+        catchUp();
+        File tempFile = new File(textFile.getPath() + ".export");
+        int count = 0;
+        try (PrintWriter writer = new PrintWriter(new FileWriter(tempFile))) {
+            for (int slot = 0; slot < highWater; slot++) {
+                int base = slotOffset(slot);
+                if (buffer.get(base + STATUS_OFFSET) != SLOT_LIVE) continue;
+
+                FileManager.AccountData data = readRecord(slot);
+                String updated = LocalDateTime.ofInstant(
+                        Instant.ofEpochMilli(buffer.getLong(base + UPDATED_OFFSET)),
+                        ZoneId.systemDefault()).format(formatter);
+                writer.println(String.join("|",
+                        data.accountNumber,
+                        data.customerID,
+                        data.accountType,
+                        Money.format(data.balance),
+                        data.branch,
+                        data.extraData,
+                        updated
+                ));
+                count++;
+            }
+        }
+        Files.move(tempFile.toPath(), textFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        System.out.println("Exported " + count + " accounts to " + textFile.getName());
+        return count;
+    }
+
+    // ---------------- LIFECYCLE ----------------
+
+    public synchronized void force() {
+        buffer.force();
+    }
+
+    public synchronized void close() {
+        try {
+            buffer.force();
+            channel.close();
+            raf.close();
+            if (changes != null) {
+                changes.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing account table: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+import javafx.application.Platform;
+import javafx.scene.Cursor;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs the bank operations behind the forms on a background thread, so the JavaFX application
+ * thread never waits for the data files, the write-ahead log or a retry delay. Each method
+ * returns at once with a CompletableFuture; controllers hand it to whenDone, which disables their
+ * buttons and shows a wait cursor while it is pending and calls back on the JavaFX thread.
+ *
+ * Operations run one at a time in the order they were submitted, so a deposit followed by a
+ * transfer from the same window is applied in that order.
+ */
+public final class BankService {
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "bank-service");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Runs callbacks on the JavaFX application thread
+     */
+    public static final Executor FX_THREAD = Platform::runLater;
+
+    private BankService() {
+    }
+
+    // ---------------- OPERATIONS ----------------
+
+    public static <T> CompletableFuture<T> submit(Supplier<T> operation) {
+        return CompletableFuture.supplyAsync(operation, executor);
+    }
+
+    public static CompletableFuture<Customer> login(String loginInput, String password) {
+        return submit(() -> Main.loginWithIdOrEmail(loginInput, password));
+    }
+
+    public static CompletableFuture<Boolean> registerCustomer(String firstname, String surname, String address,
+                                                              String customerID, String password, String type,
+                                                              String dob, String idNumber, String businessName,
+                                                              String regNumber, String businessAddress, String email) {
+        // Retries wait on the storage retry scheduler, not on the service thread
+        return submit(() -> Main.registerCustomerAsync(firstname, surname, address, customerID, password, type, dob,
+                idNumber, businessName, regNumber, businessAddress, email)).thenCompose(saved -> saved);
+    }
+
+    public static CompletableFuture<Boolean> deposit(Account account, double amount, String description) {
+        return submit(() -> LedgerPipeline.deposit(account, amount, description) == Posting.Outcome.POSTED);
+    }
+
+    public static CompletableFuture<Boolean> withdraw(Account account, double amount, String description) {
+        return submit(() -> LedgerPipeline.withdraw(account, amount, description) == Posting.Outcome.POSTED);
+    }
+
+    public static CompletableFuture<TransferEngine.Outcome> transfer(Account fromAccount, Account toAccount,
+                                                                     double amount, String description) {
+        return submit(() -> LedgerPipeline.transfer(fromAccount, toAccount, amount, description));
+    }
+
+    public static CompletableFuture<Integer> payAllInterest(Customer customer) {
+        return submit(() -> Main.payAllInterest(customer));
+    }
+
+    public static CompletableFuture<Boolean> createAccount(Customer customer, String type, String accNum,
+                                                           String empName, String empAddress, double initialDeposit) {
+        return submit(() -> Main.createAccount(customer, type, accNum, empName, empAddress, initialDeposit));
+    }
+
+    // ---------------- JAVAFX ----------------
+
+    /**
+     * Disable the given controls until the operation completes, then pass its result, or the
+     * exception it failed with, to the handler on the JavaFX thread. Call from the JavaFX thread.
+     */
+    public static <T> void whenDone(CompletableFuture<T> operation, BiConsumer<? super T, Throwable> handler,
+                                    Node... busy) {
+        Scene scene = busy.length > 0 ? busy[0].getScene() : null;
+        for (Node node : busy) {
+            node.setDisable(true);
+        }
+        if (scene != null) {
+            scene.setCursor(Cursor.WAIT);
+        }
+        operation.whenCompleteAsync((result, error) -> {
+            for (Node node : busy) {
+                node.setDisable(false);
+            }
+            if (scene != null) {
+                scene.setCursor(Cursor.DEFAULT);
+            }
+            handler.accept(result, error instanceof CompletionException ? error.getCause() : error);
+        }, FX_THREAD);
+    }
+
+    // ---------------- SHUTDOWN ----------------
+
+    /**
+     * Let operations already submitted finish before the stores are closed
+     */
+    public static void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                System.out.println("Bank service did not finish pending operations in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Storage engine for customers, passwords, accounts and transactions.
+ * Domain classes and controllers go through BankStores.get(), so engines can be swapped
+ * (see BankStores for how one is selected) without touching them.
+ *
+ * Loaders return fresh objects: customers come back without accounts, and accounts are
+ * returned as AccountData rows for the caller to wire up.
+ */
+public interface BankStore {
+
+    String getName();
+
+    /**
+     * Prepare the engine for use; called once at startup and after a reset
+     */
+    void open();
+
+    /**
+     * Flush and release everything. Engines that keep a startup snapshot write one when asked.
+     */
+    void close(boolean writeSnapshot);
+
+    /**
+     * Delete all data and reopen empty
+     */
+    void reset() throws IOException;
+
+    // ---------------- CUSTOMERS ----------------
+
+    /**
+     * Store a new customer; false if the record could not be written
+     */
+    boolean saveCustomer(Customer customer);
+
+    boolean updateCustomer(Customer customer);
+
+    /**
+     * Delete a customer together with their password, accounts and transactions
+     */
+    boolean deleteCustomer(String customerID);
+
+    Map<String, Customer> loadAllCustomers();
+
+    /**
+     * One customer, without accounts, or null
+     */
+    default Customer loadCustomer(String customerID) {
+        return loadAllCustomers().get(customerID);
+    }
+
+    default boolean customerExists(String customerID) {
+        return loadCustomer(customerID) != null;
+    }
+
+    /**
+     * Stored accounts of one customer; used to refresh a single customer after external edits
+     */
+    default List<FileManager.AccountData> loadAccountsForCustomer(String customerID) {
+        List<FileManager.AccountData> owned = new ArrayList<>();
+        for (FileManager.AccountData account : loadAllAccounts()) {
+            if (customerID.equals(account.customerID)) {
+                owned.add(account);
+            }
+        }
+        return owned;
+    }
+
+    // ---------------- PASSWORDS ----------------
+
+    /**
+     * Store a customer's password hash; false if the record could not be written
+     */
+    boolean savePassword(String customerID, String passwordHash);
+
+    boolean updatePassword(String customerID, String passwordHash);
+
+    Map<String, String> loadAllPasswords();
+
+    default String loadPassword(String customerID) {
+        return loadAllPasswords().get(customerID);
+    }
+
+    // ---------------- ACCOUNTS ----------------
+
+    void saveAccount(Account account, String customerID);
+
+    boolean updateAccount(Account account);
+
+    /**
+     * Delete an account together with its transactions
+     */
+    boolean deleteAccount(String accountNumber);
+
+    List<FileManager.AccountData> loadAllAccounts();
+
+    // ---------------- TRANSACTIONS ----------------
+
+    void saveTransaction(Transaction transaction, String accountNumber);
+
+    /**
+     * Queue a transaction; the future completes once it is durable
+     */
+    CompletableFuture<Void> saveTransactionAsync(Transaction transaction, String accountNumber);
+
+    /**
+     * Save several transactions for one account and wait until all of them are durable
+     */
+    default void saveTransactions(String accountNumber, List<Transaction> transactions) {
+        List<CompletableFuture<Void>> pending = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            pending.add(saveTransactionAsync(transaction, accountNumber));
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+    /**
+     * Stream one account's transactions, oldest first, without building a list
+     */
+    void forEachTransaction(String accountNumber, Consumer<Transaction> action);
+
+    /**
+     * Stream every transaction in the store with its account number
+     */
+    void forEachTransaction(BiConsumer<String, Transaction> action);
+
+    default List<Transaction> loadTransactionsForAccount(String accountNumber) {
+        List<Transaction> transactions = new ArrayList<>();
+        forEachTransaction(accountNumber, transactions::add);
+        return transactions;
+    }
+
+    default Map<String, List<Transaction>> loadAllTransactions() {
+        Map<String, List<Transaction>> transactionsByAccount = new HashMap<>();
+        forEachTransaction((accountNumber, transaction) ->
+                transactionsByAccount.computeIfAbsent(accountNumber, key -> new ArrayList<>()).add(transaction));
+        return transactionsByAccount;
+    }
+
+    // ---------------- TRANSFERS ----------------
+
+    /**
+     * Store a batch of transactions as one write. Either the whole batch is stored or none of it is.
+     * Balances are not stored with it; they are rebuilt from the events.
+     */
+    boolean savePostings(Map<String, List<Transaction>> transactionsByAccount);
+
+    // ---------------- FRESHNESS ----------------
+
+    /**
+     * True if another program changed the stored data since markCurrent(); our own writes do not count
+     */
+    default boolean hasExternalChanges() {
+        return false;
+    }
+
+    /**
+     * Accept the stored data as it is now as the baseline for hasExternalChanges()
+     */
+    default void markCurrent() {
+    }
+
+    // ---------------- SHARING ----------------
+
+    // Returned by adjustBalance
+    long BALANCE_REFUSED = Long.MIN_VALUE;
+    long BALANCE_NOT_STORED = Long.MIN_VALUE + 1;
+
+    /**
+     * True if other processes use the stored data at the same time. Balances are then changed
+     * only through adjustBalance, on the stored balance itself, never by storing a balance.
+     */
+    default boolean isShared() {
+        return false;
+    }
+
+    /**
+     * Add a signed amount to an account's stored balance if allowed (null for always) accepts the
+     * balance it replaces, in one step no other process can come between; an amount of zero only
+     * reads it. Returns the new balance, BALANCE_REFUSED, or BALANCE_NOT_STORED if the account is
+     * not stored (or the engine is not shared).
+     */
+    default long adjustBalance(String accountNumber, long amount, LongPredicate allowed) {
+        return BALANCE_NOT_STORED;
+    }
+
+    /**
+     * Accounts whose stored records other processes changed since the last call, or null if
+     * changes were missed and every account should be re-read
+     */
+    default Set<String> takeChangedAccounts() {
+        return Collections.emptySet();
+    }
+
+    // ---------------- STARTUP ----------------
+
+    /**
+     * A current image of the whole store for a fast start, or null to load normally
+     */
+    default SnapshotStore.Image readSnapshot() {
+        return null;
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Chooses the storage engine the application runs on.
+ * The engine is picked once from -Dbank.store (file or memory, default file);
+ * use() swaps in another engine, e.g. for a benchmark, before anything is loaded.
+ */
+public final class BankStores {
+    public static final String STORE_ENGINE = System.getProperty("bank.store", "file");
+
+    private static volatile BankStore current;
+
+    private BankStores() {
+    }
+
+    /**
+     * The engine in use, created from the bank.store setting on first access
+     */
+    public static BankStore get() {
+        BankStore store = current;
+        if (store == null) {
+            synchronized (BankStores.class) {
+                if (current == null) {
+                    current = create(STORE_ENGINE);
+                }
+                store = current;
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Open the engine in use; called once at startup
+     */
+    public static BankStore open() {
+        BankStore store = get();
+        store.open();
+        System.out.println("Storage engine: " + store.getName());
+        return store;
+    }
+
+    public static synchronized void use(BankStore store) {
+        current = store;
+    }
+
+    static BankStore create(String engine) {
+        switch (engine.trim().toLowerCase()) {
+            case "memory":
+                return new InMemoryBankStore();
+            case "file":
+                return new FileBankStore();
+            default:
+                System.out.println("Unknown storage engine '" + engine + "', using file");
+                return new FileBankStore();
+        }
+    }
+}
@@ -0,0 +1,279 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Loads customers, passwords, accounts and transactions with one pass over each store
+ * and wires them into a single object graph. Rows are grouped by owner in hash maps,
+ * so startup cost grows linearly with the amount of data.
+ * The four stores are parsed concurrently, so a cold start takes about as long as the largest one;
+ * a current binary snapshot (SnapshotStore) skips parsing altogether.
+ * Balances are rebuilt by replaying each account's ledger events, in parallel across accounts;
+ * the balance stored with the account is only used for accounts that have no events yet.
+ * Everything is read through the storage engine in use (BankStores).
+ */
+public class BulkLoader {
+    // Worker threads for the parse phases; 1 loads the stores one after another
+    public static final int STARTUP_PARALLELISM = Integer.getInteger("bank.startup.parallelism", 4);
+
+    private static final int LOAD_STEPS = 5; // four stores plus wiring
+    private static final int REPLAY_SLICE = 1024; // fewest accounts replayed per task
+
+    /**
+     * Receives startup progress; fraction runs from 0 to 1
+     */
+    public interface ProgressListener {
+        void onProgress(String message, double fraction);
+    }
+
+    /**
+     * The wired object graph plus how long each phase took
+     */
+    public static class Result {
+        public final Map<String, Customer> customers;
+        public final Map<String, String> passwords;
+        public final Map<String, Account> accounts;
+        public UniqueKeyRegistry uniqueKeys;
+        public AccountIndex accountIndex;
+        public final Map<String, Long> phaseMillis = new LinkedHashMap<>();
+        public long wallMillis = 0;
+        public int orphanAccounts = 0;
+        public int transactionCount = 0;
+        public int driftedAccounts = 0;      // stored balance differed from the replayed events
+        public final List<Account> unnumberedAccounts = new ArrayList<>(); // no ledger events yet
+
+        Result(Map<String, Customer> customers, Map<String, String> passwords, Map<String, Account> accounts) {
+            this.customers = customers;
+            this.passwords = passwords;
+            this.accounts = accounts;
+        }
+    }
+
+    public static Result load() {
+        return load(STARTUP_PARALLELISM, (message, fraction) -> { });
+    }
+
+    /**
+     * Load on a pool of the given size that is shut down afterwards
+     */
+    public static Result load(int parallelism, ProgressListener listener) {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            return load(pool, listener);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Parse the four stores concurrently on the executor, then wire the object graph
+     */
+    public static Result load(ExecutorService executor, ProgressListener listener) {
+        long start = System.nanoTime();
+        listener.onProgress("Checking snapshot...", 0);
+
+        // A snapshot taken after the last change to the data files replaces all four parse phases
+        BankStore store = BankStores.get();
+        SnapshotStore.Image snapshot = store.readSnapshot();
+        if (snapshot != null) {
+            long snapshotDone = System.nanoTime();
+            Result result = wire(snapshot, executor);
+            long end = System.nanoTime();
+            result.phaseMillis.put("snapshot", (snapshotDone - start) / 1_000_000);
+            result.phaseMillis.put("wiring", (end - snapshotDone) / 1_000_000);
+            result.wallMillis = (end - start) / 1_000_000;
+            listener.onProgress("Loaded " + result.customers.size() + " customers", 1.0);
+            report(result);
+            return result;
+        }
+
+        Map<String, Long> timings = new ConcurrentHashMap<>();
+        AtomicInteger finished = new AtomicInteger();
+        listener.onProgress("Loading data files...", 0);
+
+        CompletableFuture<Map<String, Customer>> customersLoad =
+                phase("customers", store::loadAllCustomers, executor, timings, finished, listener);
+        CompletableFuture<Map<String, String>> passwordsLoad =
+                phase("passwords", store::loadAllPasswords, executor, timings, finished, listener);
+        CompletableFuture<List<FileManager.AccountData>> accountsLoad =
+                phase("accounts", store::loadAllAccounts, executor, timings, finished, listener);
+        CompletableFuture<Map<String, List<Transaction>>> transactionsLoad =
+                phase("transactions", store::loadAllTransactions, executor, timings, finished, listener);
+
+        SnapshotStore.Image image;
+        try {
+            image = new SnapshotStore.Image(customersLoad.join(), passwordsLoad.join(),
+                    accountsLoad.join(), transactionsLoad.join());
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new IllegalStateException("Startup load failed: " + cause.getMessage(), cause);
+        }
+
+        long wiringStart = System.nanoTime();
+        Result result = wire(image, executor);
+        long end = System.nanoTime();
+
+        for (String phase : new String[]{"customers", "passwords", "accounts", "transactions"}) {
+            result.phaseMillis.put(phase, timings.getOrDefault(phase, 0L));
+        }
+        result.phaseMillis.put("wiring", (end - wiringStart) / 1_000_000);
+        result.wallMillis = (end - start) / 1_000_000;
+        listener.onProgress("Loaded " + result.customers.size() + " customers", 1.0);
+        report(result);
+        return result;
+    }
+
+    /**
+     * Attach accounts to their owners and transactions to their accounts, replay each account's
+     * events on the executor, and index accounts and unique keys
+     */
+    private static Result wire(SnapshotStore.Image image, ExecutorService executor) {
+        Map<String, Account> accounts = new HashMap<>(image.accounts.size() * 2);
+        Result result = new Result(image.customers, image.passwords, accounts);
+        result.accountIndex = new AccountIndex();
+
+        for (Customer customer : image.customers.values()) {
+            customer.getAccounts().clear();
+        }
+        for (FileManager.AccountData data : image.accounts) {
+            Customer owner = image.customers.get(data.customerID);
+            if (owner == null) {
+                result.orphanAccounts++;
+                continue;
+            }
+            Account account = createAccount(data, owner);
+            if (account != null) {
+                owner.addAccount(account);
+                accounts.put(data.accountNumber, account);
+                result.accountIndex.put(account, owner);
+            }
+        }
+        replayAll(new ArrayList<>(accounts.values()), image.transactions, result, executor);
+        result.uniqueKeys = UniqueKeyRegistry.build(image.customers.values());
+        return result;
+    }
+
+    /**
+     * Rebuild every account's balance from its events, a slice of accounts per task
+     */
+    private static void replayAll(List<Account> accounts, Map<String, List<Transaction>> transactions,
+                                  Result result, ExecutorService executor) {
+        int slice = Math.max(REPLAY_SLICE, accounts.size() / (STARTUP_PARALLELISM * 4) + 1);
+        List<CompletableFuture<int[]>> replays = new ArrayList<>();
+        List<List<Account>> unnumbered = new ArrayList<>();
+        for (int from = 0; from < accounts.size(); from += slice) {
+            List<Account> accountSlice = accounts.subList(from, Math.min(accounts.size(), from + slice));
+            List<Account> sliceUnnumbered = new ArrayList<>();
+            unnumbered.add(sliceUnnumbered);
+            replays.add(CompletableFuture.supplyAsync(
+                    () -> replay(accountSlice, transactions, sliceUnnumbered), executor));
+        }
+        for (int i = 0; i < replays.size(); i++) {
+            int[] counts = replays.get(i).join();
+            result.transactionCount += counts[0];
+            result.driftedAccounts += counts[1];
+            result.unnumberedAccounts.addAll(unnumbered.get(i));
+        }
+    }
+
+    // Returns the number of transactions replayed and of balances that differed from the stored one
+    private static int[] replay(List<Account> accounts, Map<String, List<Transaction>> transactions,
+                                List<Account> unnumbered) {
+        int[] counts = new int[2];
+        for (Account account : accounts) {
+            List<Transaction> history = transactions.get(account.getAccountNumber());
+            long stored = account.getBalanceThebe();
+            if (!account.replayEvents(history != null ? history : Collections.emptyList())) {
+                unnumbered.add(account);
+            } else if (account.getBalanceThebe() != stored) {
+                counts[1]++;
+            }
+            if (history != null) {
+                counts[0] += history.size();
+            }
+        }
+        return counts;
+    }
+
+    private static <T> CompletableFuture<T> phase(String name, Supplier<T> loader, ExecutorService executor,
+                                                  Map<String, Long> timings, AtomicInteger finished,
+                                                  ProgressListener listener) {
+        return CompletableFuture.supplyAsync(() -> {
+            long phaseStart = System.nanoTime();
+            T value = loader.get();
+            timings.put(name, (System.nanoTime() - phaseStart) / 1_000_000);
+            listener.onProgress("Loaded " + name, (double) finished.incrementAndGet() / LOAD_STEPS);
+            return value;
+        }, executor);
+    }
+
+    private static void report(Result result) {
+        System.out.println("Bulk load: " + result.customers.size() + " customers, "
+                + result.accounts.size() + " accounts, "
+                + result.transactionCount + " transactions in " + result.wallMillis + " ms");
+        StringBuilder phases = new StringBuilder("Bulk load phases:");
+        for (Map.Entry<String, Long> phase : result.phaseMillis.entrySet()) {
+            phases.append(' ').append(phase.getKey()).append('=').append(phase.getValue()).append("ms");
+        }
+        System.out.println(phases);
+        if (result.driftedAccounts > 0) {
+            System.out.println("Rebuilt " + result.driftedAccounts
+                    + " account balances that differed from the stored balance");
+        }
+        if (result.orphanAccounts > 0) {
+            System.out.println("Skipped " + result.orphanAccounts + " accounts whose owner no longer exists");
+        }
+    }
+
+    // ---------------- ACCOUNT CONSTRUCTION ----------------
+
+    /**
+     * Create an Account object from a stored account row
+     */
+    static Account createAccount(FileManager.AccountData data, Customer customer) {
+        try {
+            switch (data.accountType.toUpperCase()) {
+                case "SAVINGS":
+                    double savingsRate = 2.5; // default
+                    try {
+                        savingsRate = Double.parseDouble(data.extraData);
+                    } catch (NumberFormatException e) {
+                        System.out.println("Using default interest rate for savings account");
+                    }
+                    SavingsAccount savingsAccount = new SavingsAccount(data.accountNumber, customer, data.balance, savingsRate);
+                    savingsAccount.setBranch(data.branch);
+                    return savingsAccount;
+
+                case "CHEQUE":
+                    String[] employerParts = data.extraData.split(";");
+                    String employerName = employerParts.length > 0 ? employerParts[0] : "";
+                    String employerAddress = employerParts.length > 1 ? employerParts[1] : "";
+                    ChequeAccount chequeAccount = new ChequeAccount(data.accountNumber, customer, data.balance, 500.0);
+                    chequeAccount.setEmployerName(employerName);
+                    chequeAccount.setEmployerAddress(employerAddress);
+                    chequeAccount.setBranch(data.branch);
+                    return chequeAccount;
+
+                case "INVESTMENT":
+                    double investmentRate = 5.0; // default
+                    try {
+                        investmentRate = Double.parseDouble(data.extraData);
+                    } catch (NumberFormatException e) {
+                        System.out.println("Using default interest rate for investment account");
+                    }
+                    Investment investment = new Investment(data.accountNumber, customer, data.balance, investmentRate);
+                    investment.setBranch(data.branch);
+                    return investment;
+
+                default:
+                    System.out.println("Unknown account type: " + data.accountType);
+                    return null;
+            }
+        } catch (Exception e) {
+            System.err.println("Error creating account from data: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
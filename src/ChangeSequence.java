@@ -0,0 +1,134 @@
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+
+/**
+ * A memory-mapped ring of numbered changes, shared by every process using the data directory.
+ * A process that changes an account table slot publishes the slot number; the others read the
+ * entries since the last one they saw and re-read only those slots.
+ *
+ * Numbers are handed out with an atomic add on the mapped counter, so publishing takes no lock.
+ * An entry is written first and its number stored last, with release semantics; a reader that
+ * finds an entry without its number stops there and tries again later. A reader that falls more
+ * than a ring's worth of entries behind has missed changes and must re-read everything.
+ *
+ * Layout: header (magic, version, capacity, next number at offset 16), then capacity entries of
+ * 16 bytes: number + 1 (0 until published), slot, writer.
+ */
+public class ChangeSequence {
+    private static final int MAGIC = 0x43485351; // "CHSQ"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int NEXT_OFFSET = 16;
+    private static final int ENTRY_SIZE = 16;
+    private static final int DEFAULT_CAPACITY = 65536;
+
+    // Atomic access to longs in the mapped file; offsets are multiples of 8 in a page-aligned mapping
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    /**
+     * Returned by read() when changes were overwritten before they were read
+     */
+    public static final long OVERRUN = -1;
+
+    public interface Reader {
+        void changed(int slot, boolean ownChange);
+    }
+
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int writer = (int) ProcessHandle.current().pid();
+
+    public ChangeSequence(String path) throws IOException {
+        this.raf = new RandomAccessFile(path, "rw");
+        this.channel = raf.getChannel();
+        // Two processes may open a new directory at once; only one of them writes the header
+        try (FileLock ignored = channel.lock(0, HEADER_SIZE, false)) {
+            if (raf.length() >= HEADER_SIZE) {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                    throw new IOException("Not a change sequence file: " + path);
+                }
+                capacity = header.getInt(8);
+                buffer = map();
+            } else {
+                capacity = DEFAULT_CAPACITY;
+                buffer = map();
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(8, capacity);
+                buffer.force();
+            }
+        }
+    }
+
+    private MappedByteBuffer map() throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * ENTRY_SIZE);
+    }
+
+    private static int entryOffset(long number, int capacity) {
+        return HEADER_SIZE + (int) (number % capacity) * ENTRY_SIZE;
+    }
+
+    // ---------------- PUBLISHING ----------------
+
+    /**
+     * Record that a slot changed
+     */
+    public void publish(int slot) {
+        long number = (long) LONGS.getAndAdd(buffer, NEXT_OFFSET, 1L);
+        int entry = entryOffset(number, capacity);
+        buffer.putInt(entry + 8, slot);
+        buffer.putInt(entry + 12, writer);
+        LONGS.setRelease(buffer, entry, number + 1);
+    }
+
+    /**
+     * The number the next change will get; a reader starting now begins here
+     */
+    public long next() {
+        return (long) LONGS.getAcquire(buffer, NEXT_OFFSET);
+    }
+
+    // ---------------- READING ----------------
+
+    /**
+     * Pass the slot of every published change numbered from seen on to the reader, in order.
+     * Returns the number to continue from next time, or OVERRUN if changes were lost.
+     */
+    public long read(long seen, Reader reader) {
+        long next = next();
+        if (next - seen > capacity) {
+            return OVERRUN;
+        }
+        for (long number = seen; number < next; number++) {
+            int entry = entryOffset(number, capacity);
+            long published = (long) LONGS.getAcquire(buffer, entry);
+            if (published < number + 1) {
+                return number; // still being written
+            }
+            int slot = buffer.getInt(entry + 8);
+            int from = buffer.getInt(entry + 12);
+            if ((long) LONGS.getAcquire(buffer, entry) != number + 1) {
+                return OVERRUN; // a later change took the entry while it was read
+            }
+            reader.changed(slot, from == writer);
+        }
+        return next;
+    }
+
+    public void close() {
+        try {
+            channel.close();
+            raf.close();
+        } catch (IOException e) {
+            System.err.println("Error closing change sequence: " + e.getMessage());
+        }
+    }
+}
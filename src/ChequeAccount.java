@@ -3,7 +3,7 @@ import java.time.LocalDate;
     public class ChequeAccount extends Account implements Withdrawal {
     private String employerName;
     private String employerAddress;
-    private double overdraftLimit;
+    private volatile long overdraftLimit; // thebe
 
 
     public ChequeAccount(String accountNumber, String branch, Customer customer,
@@ -11,55 +11,56 @@ import java.time.LocalDate;
         super(accountNumber, branch, customer);
         this.employerName = employerName;
         this.employerAddress = employerAddress;
-        this.overdraftLimit = 500.0; // Default overdraft limit
+        this.overdraftLimit = Money.ofPula(500.0); // Default overdraft limit
     }
 
-    // Constructor for loading from file
-    public ChequeAccount(String accountNumber, Customer customer, double balance, double overdraftLimit) {
+    // Constructor for loading from file; balance is in thebe
+    public ChequeAccount(String accountNumber, Customer customer, long balance, double overdraftLimit) {
         super(accountNumber, customer, balance);
-        this.overdraftLimit = overdraftLimit;
+        this.overdraftLimit = Money.ofPula(overdraftLimit);
         this.employerName = "";
         this.employerAddress = "";
     }
 
     public String getEmployerName() { return employerName; }
     public String getEmployerAddress() { return employerAddress; }
-    public double getOverdraftLimit() { return overdraftLimit; }
+    public double getOverdraftLimit() { return Money.toPula(overdraftLimit); }
 
     public void setEmployerName(String employerName) { this.employerName = employerName; }
     public void setEmployerAddress(String employerAddress) { this.employerAddress = employerAddress; }
-    public void setOverdraftLimit(double overdraftLimit) { this.overdraftLimit = overdraftLimit; }
+    public void setOverdraftLimit(double overdraftLimit) { this.overdraftLimit = Money.ofPula(overdraftLimit); }
 
     @Override
-    protected boolean canWithdraw(double amount) {
-        return amount > 0 && amount <= (balance + overdraftLimit);
+    protected boolean canWithdraw(long balance, long amount) {
+        return amount > 0 && amount <= Money.add(balance, overdraftLimit);
     }
 
     @Override
     public boolean withdraw(double amount, String description) {
-        if (!canWithdraw(amount)) {
+        long thebe = Money.ofPula(amount);
+        long newBalance = tryDebit(thebe);
+        if (newBalance == REFUSED) {
             System.out.println("Withdrawal failed: Insufficient funds including overdraft");
             return false;
         }
 
-        balance -= amount;
-        Transaction transaction = new Transaction(
+        Transaction transaction = newEvent(
+                LedgerEvent.WITHDRAWN,
                 LocalDate.now().format(dateFormatter),
                 description,
-                amount,
+                thebe,
                 "WITHDRAWAL",
-                balance
+                newBalance
         );
 
         addTransaction(transaction);
 
-        // Save transaction to file and update account balance
+        // The event is the only write; the balance is rebuilt from events on load
         transaction.saveTransaction(this.accountNumber);
-        updateAccountBalance();
 
-        System.out.println("Withdrawal successful: " + amount + " from cheque account " + accountNumber);
-        if (balance < 0) {
-            System.out.println("Overdraft used. Current balance: " + balance);
+        System.out.println("Withdrawal successful: " + Money.format(thebe) + " from cheque account " + accountNumber);
+        if (newBalance < 0) {
+            System.out.println("Overdraft used. Current balance: " + Money.format(newBalance));
         }
         return true;
     }
@@ -67,9 +68,10 @@ import java.time.LocalDate;
     @Override
     public void displayAccountInfo() {
         System.out.println("Cheque Account: " + accountNumber);
-        System.out.println("Balance: $" + balance);
-        System.out.println("Overdraft Limit: $" + overdraftLimit);
-        System.out.println("Available: $" + (balance + overdraftLimit));
+        long current = getBalanceThebe();
+        System.out.println("Balance: $" + Money.format(current));
+        System.out.println("Overdraft Limit: $" + Money.format(overdraftLimit));
+        System.out.println("Available: $" + Money.format(Money.add(current, overdraftLimit)));
         System.out.println("Employer: " + employerName);
         System.out.println("Branch: " + branch);
         System.out.println("Transactions: " + transactions.size());
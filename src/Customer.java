@@ -63,6 +63,7 @@ public abstract class Customer {
 
     public void closeAccount(String accountNumber) {
         accounts.removeIf(acc -> acc.getAccountNumber().equals(accountNumber));
+        Main.accountClosed(accountNumber);
     }
 
     // Abstract methods
@@ -70,18 +71,31 @@ public abstract class Customer {
     public abstract void displayCustomerInfo();
 
     // File operations
-    public void saveCustomer() {
-        FileManager.saveCustomer(this);
+    public boolean saveCustomer() {
+        return BankStores.get().saveCustomer(this);
     }
 
     public static Customer loadCustomer(String customerID) {
-        Map<String, Customer> customers = FileManager.loadAllCustomers();
-        return customers.get(customerID);
+        return BankStores.get().loadCustomer(customerID);
     }
 
     public static boolean customerExists(String customerID) {
-        Map<String, Customer> customers = FileManager.loadAllCustomers();
-        return customers.containsKey(customerID);
+        return BankStores.get().customerExists(customerID);
+    }
+
+    /**
+     * A detached copy of the customer's stored details, without accounts
+     */
+    public static Customer copyOf(Customer customer) {
+        if (customer instanceof CustomerBusiness) {
+            CustomerBusiness business = (CustomerBusiness) customer;
+            return new CustomerBusiness(business.getFirstname(), business.getSurname(), business.getAddress(),
+                    business.getCustomerID(), business.getBusinessName(), business.getRegistrationNumber(),
+                    business.getBusinessAddress(), business.getEmail());
+        }
+        CustomerIndividual individual = (CustomerIndividual) customer;
+        return new CustomerIndividual(individual.getFirstname(), individual.getSurname(), individual.getAddress(),
+                individual.getCustomerID(), individual.getDateOfBirth(), individual.getIdNumber(), individual.getEmail());
     }
 
     // Utility methods
@@ -94,11 +108,11 @@ public abstract class Customer {
     }
 
     public double getTotalBalance() {
-        double total = 0;
+        long total = Money.ZERO;
         for (Account acc : accounts) {
-            total += acc.getBalance();
+            total = Money.add(total, acc.getBalanceThebe());
         }
-        return total;
+        return Money.toPula(total);
     }
 
     // ---------------- CUSTOMER SELF-SERVICE CRUD OPERATIONS ----------------
@@ -113,6 +127,10 @@ public abstract class Customer {
             System.out.println("Password verification failed. Cannot update information.");
             return false;
         }
+        if (!Main.isUniqueKeyAvailable(UniqueKeyRegistry.Key.EMAIL, newEmail, customerID)) {
+            System.out.println("Email is already registered to another customer: " + newEmail);
+            return false;
+        }
 
         // Update information
         this.firstname = newFirstname;
@@ -127,8 +145,9 @@ public abstract class Customer {
         }
 
         // Save changes to file
-        boolean success = FileManager.updateCustomer(this);
+        boolean success = BankStores.get().updateCustomer(this);
         if (success) {
+            Main.reindexCustomer(this);
             System.out.println("Your information has been updated successfully.");
         }
         return success;
@@ -166,7 +185,7 @@ public abstract class Customer {
         System.out.println("All accounts, transactions, and personal information will be lost.");
 
         // Delete from file system
-        boolean success = FileManager.deleteCustomer(this.customerID);
+        boolean success = BankStores.get().deleteCustomer(this.customerID);
         if (success) {
             System.out.println("Your account has been deleted successfully. Thank you for banking with us.");
         }
@@ -203,9 +222,10 @@ public abstract class Customer {
 
         // Remove from customer's account list
         accounts.remove(account);
+        Main.accountClosed(accountNumber);
 
         // Delete from file system
-        boolean success = FileManager.deleteAccount(accountNumber);
+        boolean success = BankStores.get().deleteAccount(accountNumber);
         if (success) {
             System.out.println("Account " + accountNumber + " has been closed successfully.");
         }
@@ -220,6 +240,10 @@ public abstract class Customer {
             System.out.println("Password verification failed. Cannot update email.");
             return false;
         }
+        if (!Main.isUniqueKeyAvailable(UniqueKeyRegistry.Key.EMAIL, newEmail, customerID)) {
+            System.out.println("Email is already registered to another customer: " + newEmail);
+            return false;
+        }
 
         // Update email
         if (this instanceof CustomerIndividual) {
@@ -229,8 +253,9 @@ public abstract class Customer {
         }
 
         // Save changes
-        boolean success = FileManager.updateCustomer(this);
+        boolean success = BankStores.get().updateCustomer(this);
         if (success) {
+            Main.reindexCustomer(this);
             System.out.println("Your email has been updated to: " + newEmail);
         }
         return success;
@@ -246,7 +271,7 @@ public abstract class Customer {
         }
 
         this.address = newAddress;
-        boolean success = FileManager.updateCustomer(this);
+        boolean success = BankStores.get().updateCustomer(this);
         if (success) {
             System.out.println("Your address has been updated successfully.");
         }
@@ -42,13 +42,18 @@ public class CustomerBusiness extends Customer {
             System.out.println("Password verification failed. Cannot update information.");
             return false;
         }
+        if (!Main.isUniqueKeyAvailable(UniqueKeyRegistry.Key.REGISTRATION_NUMBER, newRegistrationNumber, customerID)) {
+            System.out.println("Registration number is already registered to another customer.");
+            return false;
+        }
 
         this.businessName = newBusinessName;
         this.registrationNumber = newRegistrationNumber;
         this.businessAddress = newBusinessAddress;
 
-        boolean success = FileManager.updateCustomer(this);
+        boolean success = BankStores.get().updateCustomer(this);
         if (success) {
+            Main.reindexCustomer(this);
             System.out.println("Your business information has been updated successfully.");
         }
         return success;
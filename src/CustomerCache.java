@@ -0,0 +1,184 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide cache of the customers in customers.txt, so point lookups are map gets
+ * instead of a parse of the whole file.
+ *
+ * The file is read once; our own writes update the cache directly. Before each lookup the file's
+ * size and modification time are checked: records appended by someone else are read from where the
+ * last read stopped, and a file that was replaced (compaction, restore) is read again in full.
+ * Our own writes reach the file later through the write-ahead log; reading them back is harmless
+ * because the last record for a customer wins.
+ */
+public class CustomerCache {
+    private final Path path;
+    private final Map<String, Customer> customers = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong fullReloads = new AtomicLong();
+    private final AtomicLong incrementalReloads = new AtomicLong();
+
+    private boolean loaded = false;
+    private long offset = 0;        // bytes of the file already applied
+    private long knownSize = -1;
+    private long knownModified = -1;
+    private Object knownFileKey;
+
+    public CustomerCache(Path path) {
+        this.path = path;
+    }
+
+    // ---------------- LOOKUPS ----------------
+
+    /**
+     * A copy of the stored customer, without accounts, or null
+     */
+    public Customer get(String customerID) {
+        refreshIfChanged();
+        Customer customer = customers.get(customerID);
+        if (customer == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return Customer.copyOf(customer);
+    }
+
+    public boolean contains(String customerID) {
+        refreshIfChanged();
+        boolean found = customers.containsKey(customerID);
+        (found ? hits : misses).incrementAndGet();
+        return found;
+    }
+
+    /**
+     * Copies of every stored customer, keyed by customer ID
+     */
+    public Map<String, Customer> getAll() {
+        refreshIfChanged();
+        Map<String, Customer> all = new HashMap<>(customers.size() * 2);
+        for (Customer customer : customers.values()) {
+            all.put(customer.getCustomerID(), Customer.copyOf(customer));
+        }
+        return all;
+    }
+
+    // ---------------- OUR OWN WRITES ----------------
+
+    public void put(Customer customer) {
+        customers.put(customer.getCustomerID(), Customer.copyOf(customer));
+    }
+
+    public void remove(String customerID) {
+        customers.remove(customerID);
+    }
+
+    /**
+     * Drop everything; the next lookup reads the file again
+     */
+    public synchronized void invalidate() {
+        customers.clear();
+        loaded = false;
+        offset = 0;
+        knownSize = -1;
+        knownModified = -1;
+        knownFileKey = null;
+    }
+
+    // ---------------- FILE CHANGES ----------------
+
+    private synchronized void refreshIfChanged() {
+        try {
+            if (!Files.exists(path)) {
+                if (!loaded) {
+                    loaded = true;
+                    fullReloads.incrementAndGet();
+                }
+                return;
+            }
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            long size = attributes.size();
+            long modified = attributes.lastModifiedTime().toMillis();
+            Object fileKey = attributes.fileKey();
+            if (loaded && size == knownSize && modified == knownModified && Objects.equals(fileKey, knownFileKey)) {
+                return;
+            }
+
+            boolean replaced = !loaded || size < offset || !Objects.equals(fileKey, knownFileKey);
+            if (replaced) {
+                // Logged writes that are not in the file yet would be lost by a full read
+                FileManager.syncPendingMutations();
+                customers.clear();
+                offset = 0;
+            }
+            RecordTokenizer records = RecordTokenizer.openFrom(path, offset);
+            int applied = apply(records);
+            offset += records.consumed();
+            knownSize = size;
+            knownModified = modified;
+            knownFileKey = fileKey;
+            loaded = true;
+
+            if (replaced) {
+                fullReloads.incrementAndGet();
+                System.out.println("Customer cache loaded " + customers.size() + " customers from " + path);
+            } else if (applied > 0) {
+                incrementalReloads.incrementAndGet();
+                System.out.println("Customer cache applied " + applied + " new records from " + path);
+            }
+        } catch (IOException e) {
+            System.err.println("Error refreshing customer cache: " + e.getMessage());
+        }
+    }
+
+    private int apply(RecordTokenizer records) {
+        int applied = 0;
+        while (records.next()) {
+            if (KeyedLogFile.isTombstone(records)) {
+                customers.remove(records.field(0));
+                applied++;
+            } else {
+                Customer customer = FileManager.parseCustomer(records);
+                if (customer != null) {
+                    customers.put(customer.getCustomerID(), customer);
+                    applied++;
+                }
+            }
+        }
+        return applied;
+    }
+
+    // ---------------- STATISTICS ----------------
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getFullReloads() {
+        return fullReloads.get();
+    }
+
+    public long getIncrementalReloads() {
+        return incrementalReloads.get();
+    }
+
+    public int size() {
+        return customers.size();
+    }
+
+    @Override
+    public String toString() {
+        return "Customer cache: " + customers.size() + " customers, " + hits + " hits, " + misses + " misses, "
+                + fullReloads + " full reloads, " + incrementalReloads + " incremental reloads";
+    }
+}
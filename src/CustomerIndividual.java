@@ -35,12 +35,17 @@ public class CustomerIndividual extends Customer {
             System.out.println("Password verification failed. Cannot update information.");
             return false;
         }
+        if (!Main.isUniqueKeyAvailable(UniqueKeyRegistry.Key.ID_NUMBER, newIdNumber, customerID)) {
+            System.out.println("ID number is already registered to another customer.");
+            return false;
+        }
 
         this.dateOfBirth = newDateOfBirth;
         this.idNumber = newIdNumber;
 
-        boolean success = FileManager.updateCustomer(this);
+        boolean success = BankStores.get().updateCustomer(this);
         if (success) {
+            Main.reindexCustomer(this);
             System.out.println("Your individual information has been updated successfully.");
         }
         return success;
@@ -1,4 +1,5 @@
 import javafx.fxml.FXML;
+import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.stage.Stage;
 
@@ -15,6 +16,11 @@ public class CustomerSettingsController {
     @FXML private PasswordField confirmPasswordField;
     @FXML private PasswordField deletePasswordField;
     @FXML private TextArea customerInfoArea;
+    @FXML private Button updateInfoButton;
+    @FXML private Button updateEmailButton;
+    @FXML private Button updateAddressButton;
+    @FXML private Button changePasswordButton;
+    @FXML private Button deleteButton;
 
     private Customer currentCustomer;
 
@@ -69,21 +75,21 @@ public class CustomerSettingsController {
             return;
         }
 
-        boolean success = currentCustomer.updateMyInfo(
+        BankService.whenDone(BankService.submit(() -> currentCustomer.updateMyInfo(
                 currentPassword,
                 newFirstname,
                 newSurname,
                 newAddress,
                 newEmail
-        );
-
-        if (success) {
-            showAlert("Success", "Your information has been updated successfully.");
-            loadCustomerData(); // Refresh displayed data
-            currentPasswordField.clear();
-        } else {
-            showAlert("Error", "Failed to update information. Please check your password.");
-        }
+        )), (success, error) -> {
+            if (error == null && success) {
+                showAlert("Success", "Your information has been updated successfully.");
+                loadCustomerData(); // Refresh displayed data
+                currentPasswordField.clear();
+            } else {
+                showAlert("Error", "Failed to update information. Please check your password.");
+            }
+        }, actionButtons());
     }
 
     @FXML
@@ -107,16 +113,17 @@ public class CustomerSettingsController {
             return;
         }
 
-        boolean success = currentCustomer.changeMyPassword(currentPassword, newPassword);
-
-        if (success) {
-            showAlert("Success", "Your password has been changed successfully.");
-            currentPasswordField2.clear();
-            newPasswordField.clear();
-            confirmPasswordField.clear();
-        } else {
-            showAlert("Error", "Failed to change password. Please check your current password.");
-        }
+        BankService.whenDone(BankService.submit(() -> currentCustomer.changeMyPassword(currentPassword, newPassword)),
+                (success, error) -> {
+                    if (error == null && success) {
+                        showAlert("Success", "Your password has been changed successfully.");
+                        currentPasswordField2.clear();
+                        newPasswordField.clear();
+                        confirmPasswordField.clear();
+                    } else {
+                        showAlert("Error", "Failed to change password. Please check your current password.");
+                    }
+                }, actionButtons());
     }
 
     @FXML
@@ -134,15 +141,16 @@ public class CustomerSettingsController {
             return;
         }
 
-        boolean success = currentCustomer.updateMyEmail(currentPassword, newEmail);
-
-        if (success) {
-            showAlert("Success", "Your email has been updated successfully.");
-            loadCustomerData();
-            currentPasswordField.clear();
-        } else {
-            showAlert("Error", "Failed to update email. Please check your password.");
-        }
+        BankService.whenDone(BankService.submit(() -> currentCustomer.updateMyEmail(currentPassword, newEmail)),
+                (success, error) -> {
+                    if (error == null && success) {
+                        showAlert("Success", "Your email has been updated successfully.");
+                        loadCustomerData();
+                        currentPasswordField.clear();
+                    } else {
+                        showAlert("Error", "Failed to update email. Please check your password.");
+                    }
+                }, actionButtons());
     }
 
     @FXML
@@ -160,15 +168,16 @@ public class CustomerSettingsController {
             return;
         }
 
-        boolean success = currentCustomer.updateMyAddress(currentPassword, newAddress);
-
-        if (success) {
-            showAlert("Success", "Your address has been updated successfully.");
-            loadCustomerData();
-            currentPasswordField.clear();
-        } else {
-            showAlert("Error", "Failed to update address. Please check your password.");
-        }
+        BankService.whenDone(BankService.submit(() -> currentCustomer.updateMyAddress(currentPassword, newAddress)),
+                (success, error) -> {
+                    if (error == null && success) {
+                        showAlert("Success", "Your address has been updated successfully.");
+                        loadCustomerData();
+                        currentPasswordField.clear();
+                    } else {
+                        showAlert("Error", "Failed to update address. Please check your password.");
+                    }
+                }, actionButtons());
     }
 
     @FXML
@@ -198,16 +207,17 @@ public class CustomerSettingsController {
 
         confirmation.showAndWait().ifPresent(response -> {
             if (response == yesButton) {
-                boolean success = currentCustomer.deleteMyAccount(password);
-
-                if (success) {
-                    showAlert("Account Deleted", "Your account has been deleted successfully. Thank you for banking with us.");
-                    // Close the application or return to login
-                    Stage stage = (Stage) customerNameLabel.getScene().getWindow();
-                    stage.close();
-                } else {
-                    showAlert("Error", "Failed to delete account. Please check your password.");
-                }
+                BankService.whenDone(BankService.submit(() -> currentCustomer.deleteMyAccount(password)),
+                        (success, error) -> {
+                            if (error == null && success) {
+                                showAlert("Account Deleted", "Your account has been deleted successfully. Thank you for banking with us.");
+                                // Close the application or return to login
+                                Stage stage = (Stage) customerNameLabel.getScene().getWindow();
+                                stage.close();
+                            } else {
+                                showAlert("Error", "Failed to delete account. Please check your password.");
+                            }
+                        }, actionButtons());
             }
         });
     }
@@ -218,6 +228,13 @@ public class CustomerSettingsController {
         stage.close();
     }
 
+    /**
+     * The buttons that change stored data, disabled while one of their operations is pending
+     */
+    private Node[] actionButtons() {
+        return new Node[] {updateInfoButton, updateEmailButton, updateAddressButton, changePasswordButton, deleteButton};
+    }
+
     private void showAlert(String title, String message) {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle(title);
@@ -18,9 +18,9 @@ public class DashboardController {
     @FXML private TableView<Transaction> transactionsTable;
     @FXML private TableColumn<Transaction, String> dateColumn;
     @FXML private TableColumn<Transaction, String> descriptionColumn;
-    @FXML private TableColumn<Transaction, Double> amountColumn;
+    @FXML private TableColumn<Transaction, String> amountColumn;
     @FXML private TableColumn<Transaction, String> typeColumn;
-    @FXML private TableColumn<Transaction, Double> balanceColumn;
+    @FXML private TableColumn<Transaction, String> balanceColumn;
 
     @FXML private Button withdrawButton;
     @FXML private Button transferButton;
@@ -33,9 +33,10 @@ public class DashboardController {
         // Fix: Use lambda expressions to access Transaction properties directly
         dateColumn.setCellValueFactory(data -> new javafx.beans.property.SimpleStringProperty(data.getValue().getDate()));
         descriptionColumn.setCellValueFactory(data -> new javafx.beans.property.SimpleStringProperty(data.getValue().getDescription()));
-        amountColumn.setCellValueFactory(data -> new javafx.beans.property.SimpleDoubleProperty(data.getValue().getAmount()).asObject());
+        // Amounts are formatted straight from thebe, without boxing a Double per cell
+        amountColumn.setCellValueFactory(data -> new javafx.beans.property.SimpleStringProperty(Money.format(data.getValue().getAmountThebe())));
         typeColumn.setCellValueFactory(data -> new javafx.beans.property.SimpleStringProperty(data.getValue().getType()));
-        balanceColumn.setCellValueFactory(data -> new javafx.beans.property.SimpleDoubleProperty(data.getValue().getBalance()).asObject());
+        balanceColumn.setCellValueFactory(data -> new javafx.beans.property.SimpleStringProperty(Money.format(data.getValue().getBalanceThebe())));
 
         transactionsTable.setItems(transactionData);
     }
@@ -160,9 +161,14 @@ public class DashboardController {
     @FXML
     private void handlePayInterest() {
         if (currentCustomer != null) {
-            Main.payAllInterest(currentCustomer);
-            updateAccountDetails(); // Refresh the display
-            showAlert("Interest Paid", "Monthly interest has been applied to all eligible accounts");
+            BankService.whenDone(BankService.payAllInterest(currentCustomer), (count, error) -> {
+                updateAccountDetails(); // Refresh the display
+                if (error != null) {
+                    showAlert("Error", "Interest could not be paid: " + error.getMessage());
+                } else {
+                    showAlert("Interest Paid", "Monthly interest has been applied to all eligible accounts");
+                }
+            });
         }
     }
 
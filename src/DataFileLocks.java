@@ -0,0 +1,47 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Locks that let several processes write the text data files of one directory. Each file has
+ * its own one-byte region of the lock file, so a process appending a customer does not hold up
+ * one appending a password. The lock file itself is never rewritten, so a region stays valid
+ * while its data file is replaced by compaction or an export.
+ *
+ * Regions are numbered by the position of the file in the list given to the constructor; every
+ * process sharing the directory must pass the same list.
+ */
+public class DataFileLocks {
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final List<String> fileNames;
+
+    public DataFileLocks(String path, List<String> fileNames) throws IOException {
+        this.raf = new RandomAccessFile(path, "rw");
+        this.channel = raf.getChannel();
+        this.fileNames = new ArrayList<>(fileNames);
+    }
+
+    /**
+     * Wait for and take the lock of one data file. A process may hold several files' locks, but
+     * should take them in list order so two processes never wait for each other.
+     */
+    public FileLock lock(String fileName) throws IOException {
+        int region = fileNames.indexOf(fileName);
+        if (region < 0) {
+            throw new IllegalArgumentException("No lock region for " + fileName);
+        }
+        return channel.lock(region, 1, false);
+    }
+
+    public void close() {
+        try {
+            channel.close();
+            raf.close();
+        } catch (IOException e) {
+            System.err.println("Error closing data file locks: " + e.getMessage());
+        }
+    }
+}
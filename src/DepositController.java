@@ -1,4 +1,5 @@
 import javafx.fxml.FXML;
+import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.scene.control.Alert;
@@ -9,6 +10,8 @@ public class DepositController {
 
     @FXML private Label titleLabel;
     @FXML private TextField amountField;
+    @FXML private Button depositButton;
+    @FXML private Label statusLabel;
 
     public void setAccount(Account account) {
         this.account = account;
@@ -24,9 +27,20 @@ public class DepositController {
                 return;
             }
 
-            account.deposit(amount);
-            showAlert("Success", String.format("Successfully deposited P%.2f", amount));
-            handleBack();
+            // Saved on the bank service thread; the window stays responsive meanwhile
+            statusLabel.setText("Processing deposit...");
+            statusLabel.setVisible(true);
+            BankService.whenDone(BankService.deposit(account, amount, "Deposit"), (deposited, error) -> {
+                statusLabel.setVisible(false);
+                if (error != null) {
+                    showAlert("Error", "Deposit failed: " + error.getMessage());
+                } else if (deposited) {
+                    showAlert("Success", String.format("Successfully deposited P%.2f", amount));
+                    handleBack();
+                } else {
+                    showAlert("Error", "Deposit amount must be positive");
+                }
+            }, depositButton, amountField);
         } catch (NumberFormatException e) {
             showAlert("Error", "Please enter a valid amount");
         }
@@ -0,0 +1,236 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+
+/**
+ * The file engine: text data files, account table, transaction store and write-ahead log,
+ * all managed by FileManager. Periodic snapshots run while the engine is open.
+ * Customer lookups are answered from a CustomerCache over customers.txt.
+ */
+public class FileBankStore implements BankStore {
+    private static final String CUSTOMERS_FILE = "customers.txt";
+    private static final String[] DATA_FILES = {
+            CUSTOMERS_FILE, "accounts.txt", "transactions.txt", "passwords.txt",
+            "accounts.dat", "accounts.changes", "bank.wal", "bank.wal.ckpt", SnapshotStore.SNAPSHOT_FILE,
+            "accounts_temp.txt" // Also delete any temp files
+    };
+    private static final String TRANSACTION_STORE_DIR = "transactions";
+
+    private final CustomerCache customerCache = new CustomerCache(Paths.get(CUSTOMERS_FILE));
+
+    @Override
+    public String getName() {
+        return "file";
+    }
+
+    @Override
+    public void open() {
+        FileManager.initializeFiles();
+        // A snapshot is one process's image of the store; with several writers it is never current
+        if (!FileManager.SHARED) {
+            SnapshotStore.startPeriodicSnapshots();
+        }
+    }
+
+    @Override
+    public void close(boolean writeSnapshot) {
+        FileManager.shutdown(writeSnapshot && !FileManager.SHARED);
+        System.out.println(customerCache);
+    }
+
+    @Override
+    public void reset() throws IOException {
+        // Fold pending mutations and release the log and account table before deleting their files
+        close(false);
+
+        for (String filename : DATA_FILES) {
+            File file = new File(filename);
+            if (file.exists() && file.delete()) {
+                System.out.println("Deleted: " + filename);
+            }
+        }
+        TransactionStore.destroy(TRANSACTION_STORE_DIR);
+        customerCache.invalidate();
+
+        open();
+    }
+
+    // ---------------- CUSTOMERS ----------------
+
+    @Override
+    public boolean saveCustomer(Customer customer) {
+        if (!FileManager.saveCustomer(customer)) {
+            return false;
+        }
+        customerCache.put(customer);
+        return true;
+    }
+
+    @Override
+    public boolean updateCustomer(Customer customer) {
+        boolean updated = FileManager.updateCustomer(customer);
+        if (updated) {
+            customerCache.put(customer);
+        }
+        return updated;
+    }
+
+    @Override
+    public boolean deleteCustomer(String customerID) {
+        boolean deleted = FileManager.deleteCustomer(customerID);
+        if (deleted) {
+            customerCache.remove(customerID);
+        }
+        return deleted;
+    }
+
+    @Override
+    public Map<String, Customer> loadAllCustomers() {
+        return customerCache.getAll();
+    }
+
+    @Override
+    public Customer loadCustomer(String customerID) {
+        return customerCache.get(customerID);
+    }
+
+    @Override
+    public boolean customerExists(String customerID) {
+        return customerCache.contains(customerID);
+    }
+
+    public CustomerCache getCustomerCache() {
+        return customerCache;
+    }
+
+    // ---------------- PASSWORDS ----------------
+
+    @Override
+    public boolean savePassword(String customerID, String passwordHash) {
+        return FileManager.savePassword(customerID, passwordHash);
+    }
+
+    @Override
+    public boolean updatePassword(String customerID, String passwordHash) {
+        return FileManager.updatePassword(customerID, passwordHash);
+    }
+
+    @Override
+    public Map<String, String> loadAllPasswords() {
+        return FileManager.loadAllPasswords();
+    }
+
+    @Override
+    public String loadPassword(String customerID) {
+        return FileManager.loadPassword(customerID);
+    }
+
+    // ---------------- ACCOUNTS ----------------
+
+    @Override
+    public void saveAccount(Account account, String customerID) {
+        FileManager.saveAccount(account, customerID);
+    }
+
+    @Override
+    public boolean updateAccount(Account account) {
+        return FileManager.updateAccount(account);
+    }
+
+    @Override
+    public boolean deleteAccount(String accountNumber) {
+        return FileManager.deleteAccount(accountNumber);
+    }
+
+    @Override
+    public List<FileManager.AccountData> loadAllAccounts() {
+        return FileManager.loadAllAccounts();
+    }
+
+    @Override
+    public List<FileManager.AccountData> loadAccountsForCustomer(String customerID) {
+        return FileManager.loadAccountsForCustomer(customerID);
+    }
+
+    // ---------------- TRANSACTIONS ----------------
+
+    @Override
+    public void saveTransaction(Transaction transaction, String accountNumber) {
+        FileManager.saveTransaction(transaction, accountNumber);
+    }
+
+    @Override
+    public CompletableFuture<Void> saveTransactionAsync(Transaction transaction, String accountNumber) {
+        return FileManager.saveTransactionAsync(transaction, accountNumber);
+    }
+
+    @Override
+    public void forEachTransaction(String accountNumber, Consumer<Transaction> action) {
+        FileManager.forEachTransaction(accountNumber, action);
+    }
+
+    @Override
+    public void forEachTransaction(BiConsumer<String, Transaction> action) {
+        FileManager.forEachTransaction(action);
+    }
+
+    @Override
+    public List<Transaction> loadTransactionsForAccount(String accountNumber) {
+        return FileManager.loadTransactionsForAccount(accountNumber);
+    }
+
+    @Override
+    public Map<String, List<Transaction>> loadAllTransactions() {
+        return FileManager.loadAllTransactions();
+    }
+
+    // ---------------- TRANSFERS ----------------
+
+    @Override
+    public boolean savePostings(Map<String, List<Transaction>> transactionsByAccount) {
+        return FileManager.savePostings(transactionsByAccount);
+    }
+
+    // ---------------- FRESHNESS ----------------
+
+    @Override
+    public boolean hasExternalChanges() {
+        return FileManager.hasExternalChanges();
+    }
+
+    @Override
+    public void markCurrent() {
+        FileManager.markDataFilesCurrent();
+    }
+
+    // ---------------- SHARING ----------------
+
+    @Override
+    public boolean isShared() {
+        return FileManager.SHARED;
+    }
+
+    @Override
+    public long adjustBalance(String accountNumber, long amount, LongPredicate allowed) {
+        return FileManager.adjustBalance(accountNumber, amount, allowed);
+    }
+
+    @Override
+    public Set<String> takeChangedAccounts() {
+        return FileManager.takeChangedAccounts();
+    }
+
+    // ---------------- STARTUP ----------------
+
+    @Override
+    public SnapshotStore.Image readSnapshot() {
+        return SnapshotStore.readSnapshot();
+    }
+}
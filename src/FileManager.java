@@ -1,5 +1,17 @@
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -8,177 +20,128 @@ public class FileManager {
     private static final String ACCOUNTS_FILE = "accounts.txt";
     private static final String TRANSACTIONS_FILE = "transactions.txt";
     private static final String PASSWORDS_FILE = "passwords.txt";
+    private static final String ACCOUNT_TABLE_FILE = "accounts.dat";
+    private static final String CHANGE_SEQUENCE_FILE = "accounts.changes";
+    private static final String LOCK_FILE = "bank.lock";
+    private static final String[] TEXT_FILES = {CUSTOMERS_FILE, PASSWORDS_FILE, ACCOUNTS_FILE, TRANSACTIONS_FILE};
+    private static final String TRANSACTION_STORE_DIR = "transactions";
+    private static final int TRANSACTION_PARTITIONS = 32;
+    private static final long TRANSACTION_SEGMENT_BYTES = 8L * 1024 * 1024;
+    // "record", "group:<window micros>" or "async"
+    private static final String TRANSACTION_DURABILITY = System.getProperty("bank.transactions.durability", "group:200");
+    private static final String WAL_FILE = "bank.wal";
+    // Each process sharing the directory logs to bank.<pid>.wal; see SHARED DATA DIRECTORY
+    private static final String SHARED_WAL_PATTERN = "bank\\.\\d+\\.wal";
+    private static final String CHECKPOINT_MARKER_SUFFIX = ".ckpt";
+    private static final int CHECKPOINT_INTERVAL_SECONDS = 5;
+    private static final int CHECKPOINT_RECORD_THRESHOLD = 1000;
+    private static final int COMPACTION_INTERVAL_SECONDS = 60;
+    private static final double COMPACTION_GARBAGE_RATIO = 0.5;
+    private static final int COMPACTION_MIN_GARBAGE_ROWS = 100;
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    // Several processes use the data directory at once (-Dbank.shared=true); see SHARED DATA DIRECTORY
+    public static final boolean SHARED = Boolean.getBoolean("bank.shared");
+    private static DataFileLocks dataFileLocks;
+    private static AccountTable accountTable;
+    private static TransactionStore transactionStore;
+    private static WriteAheadLog writeAheadLog;
+    // The file writeAheadLog appends to; a leftover log's name while foldLeftoverLogs folds it
+    private static String walFile = SHARED ? "bank." + ProcessHandle.current().pid() + ".wal" : WAL_FILE;
+    private static ScheduledExecutorService checkpointer;
+    private static final Map<String, KeyedLogFile> dataFiles = new HashMap<>();
+    // Logged posting batches whose transaction rows were handed to the transaction store, by log sequence
+    private static final Map<Long, CompletableFuture<Void>> rowsInStore = new HashMap<>();
+
+    // Write-ahead log operations
+    private static final String OP_SAVE_CUSTOMER = "SAVE_CUSTOMER";
+    private static final String OP_UPDATE_CUSTOMER = "UPDATE_CUSTOMER";
+    private static final String OP_DELETE_CUSTOMER = "DELETE_CUSTOMER";
+    private static final String OP_SAVE_PASSWORD = "SAVE_PASSWORD";
+    private static final String OP_UPDATE_PASSWORD = "UPDATE_PASSWORD";
+    private static final String OP_SAVE_ACCOUNT = "SAVE_ACCOUNT";
+    private static final String OP_UPDATE_ACCOUNT = "UPDATE_ACCOUNT";
+    private static final String OP_DELETE_ACCOUNT = "DELETE_ACCOUNT";
+    private static final String OP_SAVE_TRANSACTION = "SAVE_TRANSACTION";
+    private static final String OP_POST_BATCH = "POST_BATCH";
+    private static final char BATCH_SEPARATOR = '\u001e'; // ASCII record separator between the entries of a batch
 
     // ---------------- CUSTOMER FILE OPERATIONS ----------------
 
-    public static void saveCustomer(Customer customer) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(CUSTOMERS_FILE, true))) {
-            if (customer instanceof CustomerIndividual) {
-                CustomerIndividual ind = (CustomerIndividual) customer;
-                writer.println(String.join("|",
-                        ind.getCustomerID(),
-                        "INDIVIDUAL",
-                        ind.getFirstname(),
-                        ind.getSurname(),
-                        ind.getAddress(),
-                        ind.getDateOfBirth(),
-                        ind.getIdNumber(),
-                        ind.getEmail(),
-                        LocalDateTime.now().format(formatter)
-                ));
-            } else if (customer instanceof CustomerBusiness) {
-                CustomerBusiness bus = (CustomerBusiness) customer;
-                writer.println(String.join("|",
-                        bus.getCustomerID(),
-                        "BUSINESS",
-                        bus.getFirstname(),
-                        bus.getSurname(),
-                        bus.getAddress(),
-                        bus.getBusinessName(),
-                        bus.getRegistrationNumber(),
-                        bus.getBusinessAddress(),
-                        bus.getEmail(),
-                        LocalDateTime.now().format(formatter)
-                ));
-            }
+    public static boolean saveCustomer(Customer customer) {
+        if (logMutation(OP_SAVE_CUSTOMER, customerLine(customer))) {
             System.out.println("Customer saved: " + customer.getCustomerID());
-        } catch (IOException e) {
-            System.err.println("Error saving customer: " + e.getMessage());
+            return true;
         }
+        return false;
     }
 
     /**
      * Update customer information in file
      */
     public static boolean updateCustomer(Customer customer) {
-        try {
-            File inputFile = new File(CUSTOMERS_FILE);
-            File tempFile = new File("customers_temp.txt");
-
-            BufferedReader reader = new BufferedReader(new FileReader(inputFile));
-            PrintWriter writer = new PrintWriter(new FileWriter(tempFile));
-
-            String line;
-            boolean customerFound = false;
-
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split("\\|");
-                if (parts.length >= 1 && parts[0].equals(customer.getCustomerID())) {
-                    // Update this line with new customer data
-                    if (customer instanceof CustomerIndividual) {
-                        CustomerIndividual ind = (CustomerIndividual) customer;
-                        writer.println(String.join("|",
-                                ind.getCustomerID(),
-                                "INDIVIDUAL",
-                                ind.getFirstname(),
-                                ind.getSurname(),
-                                ind.getAddress(),
-                                ind.getDateOfBirth(),
-                                ind.getIdNumber(),
-                                ind.getEmail(),
-                                LocalDateTime.now().format(formatter)
-                        ));
-                    } else if (customer instanceof CustomerBusiness) {
-                        CustomerBusiness bus = (CustomerBusiness) customer;
-                        writer.println(String.join("|",
-                                bus.getCustomerID(),
-                                "BUSINESS",
-                                bus.getFirstname(),
-                                bus.getSurname(),
-                                bus.getAddress(),
-                                bus.getBusinessName(),
-                                bus.getRegistrationNumber(),
-                                bus.getBusinessAddress(),
-                                bus.getEmail(),
-                                LocalDateTime.now().format(formatter)
-                        ));
-                    }
-                    customerFound = true;
-                } else {
-                    writer.println(line);
-                }
-            }
-
-            writer.close();
-            reader.close();
-
-            if (customerFound) {
-                if (inputFile.delete()) {
-                    boolean success = tempFile.renameTo(inputFile);
-                    if (success) {
-                        System.out.println("Customer updated successfully: " + customer.getCustomerID());
-                        return true;
-                    }
-                }
-                System.err.println("Error replacing customer file");
-                return false;
-            } else {
-                tempFile.delete();
-                System.err.println("Customer not found for update: " + customer.getCustomerID());
-                return false;
-            }
-
-        } catch (IOException e) {
-            System.err.println("Error updating customer: " + e.getMessage());
-            return false;
+        boolean logged = logMutation(OP_UPDATE_CUSTOMER, customerLine(customer));
+        if (logged) {
+            System.out.println("Customer update logged: " + customer.getCustomerID());
         }
+        return logged;
     }
 
     /**
-     * Delete customer from file
+     * Delete customer from file, together with their password, accounts and transactions
      */
     public static boolean deleteCustomer(String customerID) {
-        try {
-            File inputFile = new File(CUSTOMERS_FILE);
-            File tempFile = new File("customers_temp.txt");
-
-            BufferedReader reader = new BufferedReader(new FileReader(inputFile));
-            PrintWriter writer = new PrintWriter(new FileWriter(tempFile));
-
-            String line;
-            boolean customerFound = false;
-
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split("\\|");
-                if (parts.length >= 1 && parts[0].equals(customerID)) {
-                    customerFound = true;
-                    // Skip this line (delete it)
-                    continue;
-                }
-                writer.println(line);
+        List<String> accountNumbers = new ArrayList<>();
+        if (accountTable != null) {
+            for (AccountData data : accountTable.loadAll()) {
+                if (data.customerID.equals(customerID)) accountNumbers.add(data.accountNumber);
             }
+        }
 
-            writer.close();
-            reader.close();
-
-            if (customerFound) {
-                // Also delete customer's accounts and passwords
-                deleteCustomerAccounts(customerID);
-                deleteCustomerPassword(customerID);
-
-                if (inputFile.delete()) {
-                    boolean success = tempFile.renameTo(inputFile);
-                    if (success) {
-                        System.out.println("Customer deleted successfully: " + customerID);
-                        return true;
-                    }
-                }
-                System.err.println("Error replacing customer file");
-                return false;
-            } else {
-                tempFile.delete();
-                System.err.println("Customer not found for deletion: " + customerID);
-                return false;
+        boolean logged = logMutation(OP_DELETE_CUSTOMER, customerID);
+        if (logged) {
+            if (accountTable != null) {
+                accountTable.removeByCustomer(customerID);
+            }
+            for (String accountNumber : accountNumbers) {
+                dropAccountTransactions(accountNumber);
             }
+            System.out.println("Customer deletion logged: " + customerID);
+        }
+        return logged;
+    }
 
-        } catch (IOException e) {
-            System.err.println("Error deleting customer: " + e.getMessage());
-            return false;
+    private static String customerLine(Customer customer) {
+        if (customer instanceof CustomerIndividual) {
+            CustomerIndividual ind = (CustomerIndividual) customer;
+            return String.join("|",
+                    ind.getCustomerID(),
+                    "INDIVIDUAL",
+                    ind.getFirstname(),
+                    ind.getSurname(),
+                    ind.getAddress(),
+                    ind.getDateOfBirth(),
+                    ind.getIdNumber(),
+                    ind.getEmail(),
+                    LocalDateTime.now().format(formatter)
+            );
         }
+        CustomerBusiness bus = (CustomerBusiness) customer;
+        return String.join("|",
+                bus.getCustomerID(),
+                "BUSINESS",
+                bus.getFirstname(),
+                bus.getSurname(),
+                bus.getAddress(),
+                bus.getBusinessName(),
+                bus.getRegistrationNumber(),
+                bus.getBusinessAddress(),
+                bus.getEmail(),
+                LocalDateTime.now().format(formatter)
+        );
     }
 
     public static Map<String, Customer> loadAllCustomers() {
+        syncPendingMutations();
         Map<String, Customer> customers = new HashMap<>();
         File file = new File(CUSTOMERS_FILE);
 
@@ -187,34 +150,15 @@ public class FileManager {
             return customers;
         }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
+        try {
+            RecordTokenizer records = RecordTokenizer.open(file.toPath());
             int count = 0;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split("\\|");
-                if (parts.length >= 8) {
-                    String customerID = parts[0];
-                    String type = parts[1];
-                    String firstname = parts[2];
-                    String surname = parts[3];
-                    String address = parts[4];
-
-                    if ("INDIVIDUAL".equals(type) && parts.length >= 8) {
-                        String dob = parts[5];
-                        String idNumber = parts[6];
-                        String email = parts[7];
-                        CustomerIndividual customer = new CustomerIndividual(firstname, surname, address, customerID, dob, idNumber, email);
-                        customers.put(customerID, customer);
-                        count++;
-                    } else if ("BUSINESS".equals(type) && parts.length >= 9) {
-                        String businessName = parts[5];
-                        String regNumber = parts[6];
-                        String businessAddress = parts[7];
-                        String email = parts[8];
-                        CustomerBusiness customer = new CustomerBusiness(firstname, surname, address, customerID, businessName, regNumber, businessAddress, email);
-                        customers.put(customerID, customer);
-                        count++;
-                    }
+            while (records.next()) {
+                if (KeyedLogFile.isTombstone(records)) {
+                    if (customers.remove(records.field(0)) != null) count--;
+                } else {
+                    Customer customer = parseCustomer(records);
+                    if (customer != null && customers.put(customer.getCustomerID(), customer) == null) count++;
                 }
             }
             System.out.println("Loaded " + count + " customers from file.");
@@ -224,113 +168,56 @@ public class FileManager {
         return customers;
     }
 
+    /**
+     * Build a customer from a customers.txt record, or null if the record is not a valid customer
+     */
+    static Customer parseCustomer(RecordTokenizer records) {
+        if (records.fieldCount() < 8) return null;
+        boolean individual = records.fieldEquals(1, "INDIVIDUAL");
+        boolean business = !individual && records.fieldEquals(1, "BUSINESS") && records.fieldCount() >= 9;
+        if (!individual && !business) return null;
+
+        String customerID = records.field(0);
+        String firstname = records.field(2);
+        String surname = records.field(3);
+        String address = records.field(4);
+
+        if (individual) {
+            String dob = records.field(5);
+            String idNumber = records.field(6);
+            String email = records.field(7);
+            return new CustomerIndividual(firstname, surname, address, customerID, dob, idNumber, email);
+        }
+        String businessName = records.field(5);
+        String regNumber = records.field(6);
+        String businessAddress = records.field(7);
+        String email = records.field(8);
+        return new CustomerBusiness(firstname, surname, address, customerID, businessName, regNumber, businessAddress, email);
+    }
+
     // ---------------- PASSWORD FILE OPERATIONS ----------------
 
-    public static void savePassword(String customerID, String password) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(PASSWORDS_FILE, true))) {
-            writer.println(customerID + "|" + password);
+    public static boolean savePassword(String customerID, String password) {
+        if (logMutation(OP_SAVE_PASSWORD, customerID + "|" + password)) {
             System.out.println("Password saved for: " + customerID);
-        } catch (IOException e) {
-            System.err.println("Error saving password: " + e.getMessage());
+            return true;
         }
+        return false;
     }
 
     /**
      * Update customer password in file
      */
     public static boolean updatePassword(String customerID, String newPassword) {
-        try {
-            File inputFile = new File(PASSWORDS_FILE);
-            if (!inputFile.exists()) {
-                System.out.println("Password file not found.");
-                return false;
-            }
-
-            File tempFile = new File("passwords_temp.txt");
-            BufferedReader reader = new BufferedReader(new FileReader(inputFile));
-            PrintWriter writer = new PrintWriter(new FileWriter(tempFile));
-
-            String line;
-            boolean passwordFound = false;
-
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split("\\|");
-                if (parts.length >= 1 && parts[0].equals(customerID)) {
-                    // Update password
-                    writer.println(customerID + "|" + newPassword);
-                    passwordFound = true;
-                } else {
-                    writer.println(line);
-                }
-            }
-
-            writer.close();
-            reader.close();
-
-            if (passwordFound) {
-                if (inputFile.delete()) {
-                    boolean success = tempFile.renameTo(inputFile);
-                    if (success) {
-                        System.out.println("Password updated successfully for: " + customerID);
-                        return true;
-                    }
-                }
-                System.err.println("Error replacing password file");
-                return false;
-            } else {
-                tempFile.delete();
-                System.err.println("Password not found for update: " + customerID);
-                return false;
-            }
-
-        } catch (IOException e) {
-            System.err.println("Error updating password: " + e.getMessage());
-            return false;
-        }
-    }
-
-    /**
-     * Delete customer password
-     */
-    private static void deleteCustomerPassword(String customerID) {
-        try {
-            File inputFile = new File(PASSWORDS_FILE);
-            if (!inputFile.exists()) return;
-
-            File tempFile = new File("passwords_temp.txt");
-
-            BufferedReader reader = new BufferedReader(new FileReader(inputFile));
-            PrintWriter writer = new PrintWriter(new FileWriter(tempFile));
-
-            String line;
-            boolean passwordFound = false;
-
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split("\\|");
-                if (parts.length >= 1 && parts[0].equals(customerID)) {
-                    passwordFound = true;
-                    continue; // Skip this line
-                }
-                writer.println(line);
-            }
-
-            writer.close();
-            reader.close();
-
-            if (passwordFound) {
-                if (inputFile.delete()) {
-                    tempFile.renameTo(inputFile);
-                }
-            } else {
-                tempFile.delete();
-            }
-
-        } catch (IOException e) {
-            System.err.println("Error deleting password: " + e.getMessage());
+        boolean logged = logMutation(OP_UPDATE_PASSWORD, customerID + "|" + newPassword);
+        if (logged) {
+            System.out.println("Password update logged for: " + customerID);
         }
+        return logged;
     }
 
     public static Map<String, String> loadAllPasswords() {
+        syncPendingMutations();
         Map<String, String> passwords = new HashMap<>();
         File file = new File(PASSWORDS_FILE);
 
@@ -339,14 +226,14 @@ public class FileManager {
             return passwords;
         }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
+        try {
+            RecordTokenizer records = RecordTokenizer.open(file.toPath());
             int count = 0;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split("\\|");
-                if (parts.length == 2) {
-                    passwords.put(parts[0], parts[1]);
-                    count++;
+            while (records.next()) {
+                if (KeyedLogFile.isTombstone(records)) {
+                    if (passwords.remove(records.field(0)) != null) count--;
+                } else if (records.fieldCount() == 2) {
+                    if (passwords.put(records.field(0), records.field(1)) == null) count++;
                 }
             }
             System.out.println("Loaded " + count + " passwords from file.");
@@ -356,245 +243,102 @@ public class FileManager {
         return passwords;
     }
 
-    // ---------------- ACCOUNT FILE OPERATIONS ----------------
-
-    public static void saveAccount(Account account, String customerID) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(ACCOUNTS_FILE, true))) {
-            String accountType = getAccountType(account);
-            String extraData = getAccountExtraData(account);
-
-            writer.println(String.join("|",
-                    account.getAccountNumber(),
-                    customerID,
-                    accountType,
-                    String.valueOf(account.getBalance()),
-                    account.getBranch(),
-                    extraData,
-                    LocalDateTime.now().format(formatter)
-            ));
-            System.out.println("Account saved: " + account.getAccountNumber() + " for customer: " + customerID);
-        } catch (IOException e) {
-            System.err.println("Error saving account: " + e.getMessage());
-        }
-    }
-
     /**
-     * Update account information in file
+     * Current password hash of one customer, or null. Other customers' rows are skipped by comparing bytes.
      */
-    public static boolean updateAccount(Account account) {
+    public static String loadPassword(String customerID) {
+        syncPendingMutations();
+        String password = null;
         try {
-            File inputFile = new File(ACCOUNTS_FILE);
-            File tempFile = new File("accounts_temp.txt");
-
-            BufferedReader reader = new BufferedReader(new FileReader(inputFile));
-            PrintWriter writer = new PrintWriter(new FileWriter(tempFile));
-
-            String line;
-            boolean accountFound = false;
-
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split("\\|");
-                if (parts.length >= 1 && parts[0].equals(account.getAccountNumber())) {
-                    // Update this line with new account data
-                    String accountType = getAccountType(account);
-                    String extraData = getAccountExtraData(account);
-                    String customerID = getCustomerIDForAccount(account);
-
-                    writer.println(String.join("|",
-                            account.getAccountNumber(),
-                            customerID,
-                            accountType,
-                            String.valueOf(account.getBalance()),
-                            account.getBranch(),
-                            extraData,
-                            LocalDateTime.now().format(formatter)
-                    ));
-                    accountFound = true;
-                } else {
-                    writer.println(line);
+            RecordTokenizer records = RecordTokenizer.open(Paths.get(PASSWORDS_FILE));
+            while (records.next()) {
+                if (!records.fieldEquals(0, customerID)) continue;
+                if (KeyedLogFile.isTombstone(records)) {
+                    password = null;
+                } else if (records.fieldCount() == 2) {
+                    password = records.field(1);
                 }
             }
+        } catch (IOException e) {
+            System.err.println("Error loading password: " + e.getMessage());
+        }
+        return password;
+    }
 
-            writer.close();
-            reader.close();
+    // ---------------- ACCOUNT FILE OPERATIONS ----------------
 
-            if (accountFound) {
-                if (inputFile.delete()) {
-                    boolean success = tempFile.renameTo(inputFile);
-                    if (success) {
-                        System.out.println("Account updated successfully: " + account.getAccountNumber());
-                        return true;
-                    }
+    public static void saveAccount(Account account, String customerID) {
+        String accountType = getAccountType(account);
+        String extraData = getAccountExtraData(account);
+
+        if (logMutation(OP_SAVE_ACCOUNT, accountLine(account, customerID))) {
+            try {
+                if (accountTable != null) {
+                    accountTable.put(new AccountData(account.getAccountNumber(), customerID, accountType,
+                            account.getBalanceThebe(), account.getBranch(), extraData));
                 }
-                System.err.println("Error replacing account file");
-                return false;
-            } else {
-                tempFile.delete();
-                System.err.println("Account not found for update: " + account.getAccountNumber());
-                return false;
+            } catch (IOException e) {
+                System.err.println("Error saving account to account table: " + e.getMessage());
             }
-
-        } catch (IOException e) {
-            System.err.println("Error updating account: " + e.getMessage());
-            return false;
+            System.out.println("Account saved: " + account.getAccountNumber() + " for customer: " + customerID);
         }
     }
 
     /**
-     * Delete account from file
+     * Update account information in file
      */
-    public static boolean deleteAccount(String accountNumber) {
-        try {
-            File inputFile = new File(ACCOUNTS_FILE);
-            File tempFile = new File("accounts_temp.txt");
-
-            BufferedReader reader = new BufferedReader(new FileReader(inputFile));
-            PrintWriter writer = new PrintWriter(new FileWriter(tempFile));
-
-            String line;
-            boolean accountFound = false;
-
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split("\\|");
-                if (parts.length >= 1 && parts[0].equals(accountNumber)) {
-                    accountFound = true;
-                    // Skip this line (delete it)
-                    continue;
-                }
-                writer.println(line);
-            }
-
-            writer.close();
-            reader.close();
-
-            if (accountFound) {
-                // Also delete account's transactions
-                deleteAccountTransactions(accountNumber);
-
-                if (inputFile.delete()) {
-                    boolean success = tempFile.renameTo(inputFile);
-                    if (success) {
-                        System.out.println("Account deleted successfully: " + accountNumber);
-                        return true;
-                    }
+    public static boolean updateAccount(Account account) {
+        AccountData existing = accountTable != null ? accountTable.get(account.getAccountNumber()) : null;
+        String customerID = existing != null ? existing.customerID : getCustomerIDForAccount(account);
+
+        boolean logged = logMutation(OP_UPDATE_ACCOUNT, accountLine(account, customerID));
+        if (logged) {
+            try {
+                if (accountTable != null) {
+                    accountTable.put(new AccountData(account.getAccountNumber(), customerID, getAccountType(account),
+                            account.getBalanceThebe(), account.getBranch(), getAccountExtraData(account)));
                 }
-                System.err.println("Error replacing account file");
-                return false;
-            } else {
-                tempFile.delete();
-                System.err.println("Account not found for deletion: " + accountNumber);
-                return false;
+            } catch (IOException e) {
+                System.err.println("Error updating account table: " + e.getMessage());
             }
-
-        } catch (IOException e) {
-            System.err.println("Error deleting account: " + e.getMessage());
-            return false;
+            System.out.println("Account update logged: " + account.getAccountNumber());
         }
+        return logged;
     }
 
     /**
-     * Delete all accounts for a customer
+     * Delete account from file, together with its transactions
      */
-    private static void deleteCustomerAccounts(String customerID) {
-        try {
-            File inputFile = new File(ACCOUNTS_FILE);
-            if (!inputFile.exists()) return;
-
-            File tempFile = new File("accounts_temp.txt");
-
-            BufferedReader reader = new BufferedReader(new FileReader(inputFile));
-            PrintWriter writer = new PrintWriter(new FileWriter(tempFile));
-
-            String line;
-            List<String> accountNumbers = new ArrayList<>();
-
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split("\\|");
-                if (parts.length >= 2 && parts[1].equals(customerID)) {
-                    accountNumbers.add(parts[0]); // Collect account numbers for transaction deletion
-                    continue; // Skip this line
-                }
-                writer.println(line);
-            }
-
-            writer.close();
-            reader.close();
-
-            if (!accountNumbers.isEmpty()) {
-                // Delete transactions for these accounts
-                for (String accountNumber : accountNumbers) {
-                    deleteAccountTransactions(accountNumber);
-                }
-
-                if (inputFile.delete()) {
-                    tempFile.renameTo(inputFile);
-                }
-            } else {
-                tempFile.delete();
+    public static boolean deleteAccount(String accountNumber) {
+        boolean logged = logMutation(OP_DELETE_ACCOUNT, accountNumber);
+        if (logged) {
+            if (accountTable != null) {
+                accountTable.remove(accountNumber);
             }
-
-        } catch (IOException e) {
-            System.err.println("Error deleting customer accounts: " + e.getMessage());
+            dropAccountTransactions(accountNumber);
+            System.out.println("Account deletion logged: " + accountNumber);
         }
+        return logged;
     }
 
-    // ---------------- UPDATE ACCOUNT BALANCE METHOD ----------------
-    public static boolean updateAccountBalance(String accountNumber, double newBalance) {
-        try {
-            File inputFile = new File(ACCOUNTS_FILE);
-
-            // If accounts file doesn't exist or is empty, we can't update
-            if (!inputFile.exists() || inputFile.length() == 0) {
-                System.out.println("Accounts file not found or empty. Cannot update balance for: " + accountNumber);
-                return false;
-            }
-
-            File tempFile = new File("accounts_temp.txt");
-            BufferedReader reader = new BufferedReader(new FileReader(inputFile));
-            PrintWriter writer = new PrintWriter(new FileWriter(tempFile));
-
-            String line;
-            boolean accountFound = false;
-
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split("\\|");
-                if (parts.length >= 4 && parts[0].equals(accountNumber)) {
-                    // Update the balance in this line
-                    parts[3] = String.valueOf(newBalance);
-                    String updatedLine = String.join("|", parts);
-                    writer.println(updatedLine);
-                    accountFound = true;
-                    System.out.println("Updated balance for account " + accountNumber + " to " + newBalance);
-                } else {
-                    writer.println(line);
-                }
-            }
-
-            writer.close();
-            reader.close();
-
-            // Replace the original file with the updated one
-            if (accountFound) {
-                if (inputFile.delete()) {
-                    boolean success = tempFile.renameTo(inputFile);
-                    if (success) {
-                        System.out.println("Account balance updated successfully: " + accountNumber);
-                        return true;
-                    }
-                }
-                // If we get here, something went wrong with file operations
-                System.err.println("Error replacing account file");
-                return false;
-            } else {
-                tempFile.delete(); // Clean up temp file
-                System.err.println("Account not found for balance update: " + accountNumber);
-                return false;
-            }
+    private static String accountLine(Account account, String customerID) {
+        return String.join("|",
+                account.getAccountNumber(),
+                customerID,
+                getAccountType(account),
+                Money.format(account.getBalanceThebe()),
+                account.getBranch(),
+                getAccountExtraData(account),
+                LocalDateTime.now().format(formatter)
+        );
+    }
 
-        } catch (IOException e) {
-            System.err.println("Error updating account balance: " + e.getMessage());
-            return false;
-        }
+    /**
+     * The stored form of an account, as the loaders return it
+     */
+    static AccountData accountData(Account account, String customerID) {
+        return new AccountData(account.getAccountNumber(), customerID, getAccountType(account),
+                account.getBalanceThebe(), account.getBranch(), getAccountExtraData(account));
     }
 
     private static String getAccountType(Account account) {
@@ -620,136 +364,331 @@ public class FileManager {
     }
 
     private static String getCustomerIDForAccount(Account account) {
-        // This method would need to find which customer owns this account
-        // For simplicity, we'll search through all customers
-        Map<String, Customer> customers = loadAllCustomers();
-        for (Customer customer : customers.values()) {
-            for (Account acc : customer.getAccounts()) {
-                if (acc.getAccountNumber().equals(account.getAccountNumber())) {
-                    return customer.getCustomerID();
-                }
+        Customer owner = account.getCustomer() != null
+                ? account.getCustomer()
+                : Main.findAccountOwner(account.getAccountNumber());
+        return owner != null ? owner.getCustomerID() : "UNKNOWN";
+    }
+
+    /**
+     * Stored accounts of one customer
+     */
+    public static List<AccountData> loadAccountsForCustomer(String customerID) {
+        if (accountTable != null) {
+            return accountTable.loadByCustomer(customerID);
+        }
+        List<AccountData> owned = new ArrayList<>();
+        for (AccountData data : loadAllAccounts()) {
+            if (customerID.equals(data.customerID)) {
+                owned.add(data);
             }
         }
-        return "UNKNOWN";
+        return owned;
     }
 
     public static List<AccountData> loadAllAccounts(Map<String, Customer> customers) {
-        List<AccountData> accountDataList = new ArrayList<>();
+        return loadAllAccounts();
+    }
+
+    /**
+     * Load every stored account row; owners are resolved by the caller
+     */
+    public static List<AccountData> loadAllAccounts() {
+        if (accountTable != null) {
+            List<AccountData> accountDataList = accountTable.loadAll();
+            System.out.println("Loaded " + accountDataList.size() + " accounts from account table.");
+            return accountDataList;
+        }
+
+        syncPendingMutations();
+        // Later records for an account replace earlier ones; a tombstone removes it
+        Map<String, AccountData> accountsByNumber = new LinkedHashMap<>();
         File file = new File(ACCOUNTS_FILE);
 
         if (!file.exists()) {
             System.out.println("Accounts file not found, starting fresh.");
-            return accountDataList;
+            return new ArrayList<>();
         }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            int count = 0;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split("\\|");
-                if (parts.length >= 6) {
-                    String accountNumber = parts[0];
-                    String customerID = parts[1];
-                    String accountType = parts[2];
-                    double balance = Double.parseDouble(parts[3]);
-                    String branch = parts[4];
-                    String extraData = parts[5];
+        try {
+            RecordTokenizer records = RecordTokenizer.open(file.toPath());
+            while (records.next()) {
+                if (KeyedLogFile.isTombstone(records)) {
+                    accountsByNumber.remove(records.field(0));
+                } else if (records.fieldCount() >= 6) {
+                    String accountNumber = records.field(0);
+                    String customerID = records.field(1);
+                    String accountType = records.field(2);
+                    long balance = records.moneyField(3);
+                    String branch = records.field(4);
+                    String extraData = records.field(5);
 
                     AccountData data = new AccountData(accountNumber, customerID, accountType, balance, branch, extraData);
-                    accountDataList.add(data);
-                    count++;
+                    accountsByNumber.put(accountNumber, data);
                 }
             }
-            System.out.println("Loaded " + count + " accounts from file.");
+            System.out.println("Loaded " + accountsByNumber.size() + " accounts from file.");
         } catch (IOException e) {
             System.err.println("Error loading accounts: " + e.getMessage());
         }
-        return accountDataList;
+        return new ArrayList<>(accountsByNumber.values());
     }
 
     // ---------------- TRANSACTION FILE OPERATIONS ----------------
 
     public static void saveTransaction(Transaction transaction, String accountNumber) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(TRANSACTIONS_FILE, true))) {
-            writer.println(String.join("|",
-                    accountNumber,
-                    transaction.getDate(),
-                    transaction.getDescription(),
-                    String.valueOf(transaction.getAmount()),
-                    transaction.getType(),
-                    String.valueOf(transaction.getBalance()),
-                    LocalDateTime.now().format(formatter)
-            ));
-            System.out.println("Transaction saved for account: " + accountNumber);
-        } catch (IOException e) {
-            System.err.println("Error saving transaction: " + e.getMessage());
+        CompletableFuture<Void> durable = saveTransactionAsync(transaction, accountNumber);
+        if (transactionStore == null || transactionStore.getDurability() != GroupCommitWriter.Durability.ASYNC) {
+            try {
+                durable.join();
+            } catch (Exception e) {
+                System.err.println("Error saving transaction: " + e.getMessage());
+                return;
+            }
         }
+        System.out.println("Transaction saved for account: " + accountNumber);
     }
 
     /**
-     * Delete all transactions for an account
+     * Queue a transaction row; the future completes when the row is durable
      */
-    private static void deleteAccountTransactions(String accountNumber) {
-        try {
-            File inputFile = new File(TRANSACTIONS_FILE);
-            if (!inputFile.exists()) return;
+    public static CompletableFuture<Void> saveTransactionAsync(Transaction transaction, String accountNumber) {
+        String line = transactionLine(accountNumber, transaction, LocalDateTime.now().format(formatter));
+        if (transactionStore != null) {
+            // Fall back to the write-ahead log off the writer thread, which must never wait on FileManager
+            return transactionStore.append(accountNumber, line).exceptionallyAsync(error -> {
+                System.err.println("Error appending to transaction store, logging instead: " + error.getMessage());
+                logMutation(OP_SAVE_TRANSACTION, line);
+                return null;
+            });
+        }
+        logMutation(OP_SAVE_TRANSACTION, line);
+        return CompletableFuture.completedFuture(null);
+    }
 
-            File tempFile = new File("transactions_temp.txt");
+    private static String transactionLine(String accountNumber, Transaction transaction, String timestamp) {
+        return String.join("|",
+                accountNumber,
+                transaction.getDate(),
+                transaction.getDescription(),
+                Money.format(transaction.getAmountThebe()),
+                transaction.getType(),
+                Money.format(transaction.getBalanceThebe()),
+                timestamp,
+                Long.toString(transaction.getSequence()),
+                transaction.getEvent().name()
+        );
+    }
 
-            BufferedReader reader = new BufferedReader(new FileReader(inputFile));
-            PrintWriter writer = new PrintWriter(new FileWriter(tempFile));
+    // ---------------- BATCH POSTINGS ----------------
 
-            String line;
+    /**
+     * Commit a batch of transactions as one write-ahead log record, so the whole batch costs one
+     * forced write and after a crash is replayed entirely or not at all. Balances are not written;
+     * they are rebuilt from the numbered events on load.
+     */
+    public static synchronized boolean savePostings(Map<String, List<Transaction>> transactionsByAccount) {
+        String timestamp = LocalDateTime.now().format(formatter);
+        List<String> rows = new ArrayList<>();
+        for (Map.Entry<String, List<Transaction>> history : transactionsByAccount.entrySet()) {
+            for (Transaction transaction : history.getValue()) {
+                rows.add(transactionLine(history.getKey(), transaction, timestamp));
+            }
+        }
+        StringBuilder payload = new StringBuilder(rows.size() * 80 + 16).append(rows.size());
+        for (String row : rows) {
+            payload.append(BATCH_SEPARATOR).append(row);
+        }
 
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split("\\|");
-                if (parts.length >= 1 && parts[0].equals(accountNumber)) {
-                    continue; // Skip this line
+        long sequence = appendToLog(OP_POST_BATCH, payload.toString());
+        if (sequence < 0) {
+            return false;
+        }
+        if (sequence > 0) {
+            // Logged: update the transaction store now, the text files on the next fold
+            if (transactionStore != null) {
+                CompletableFuture<?>[] appends = new CompletableFuture<?>[rows.size()];
+                int row = 0;
+                for (Map.Entry<String, List<Transaction>> history : transactionsByAccount.entrySet()) {
+                    for (int i = 0; i < history.getValue().size(); i++, row++) {
+                        appends[row] = transactionStore.append(history.getKey(), rows.get(row));
+                    }
                 }
-                writer.println(line);
+                rowsInStore.put(sequence, CompletableFuture.allOf(appends));
             }
+        }
+        System.out.println("Posting batch logged: " + rows.size() + " transactions, " + transactionsByAccount.size() + " accounts");
+        return true;
+    }
 
-            writer.close();
-            reader.close();
+    /**
+     * A logged batch: the row count, then the transaction rows
+     */
+    private static class PostingBatchRecord {
+        final List<String> rows;
 
-            if (inputFile.delete()) {
-                tempFile.renameTo(inputFile);
-            } else {
-                tempFile.delete();
+        PostingBatchRecord(String payload) {
+            String[] entries = payload.split(String.valueOf(BATCH_SEPARATOR), -1);
+            int rowCount = Integer.parseInt(entries[0]);
+            rows = Arrays.asList(entries).subList(1, 1 + rowCount);
+        }
+    }
+
+    /**
+     * Wait for the rows a batch handed to the transaction store when it was logged; false if
+     * there are none or any of them could not be written
+     */
+    private static boolean storedWhenLogged(CompletableFuture<Void> appends) {
+        if (appends == null) {
+            return false;
+        }
+        try {
+            appends.join();
+            return true;
+        } catch (CompletionException | CancellationException e) {
+            System.err.println("Batch rows not stored when logged, folding them again: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Append transaction rows to the store, skipping rows already there (crash replay).
+     * Each account's rows are read once.
+     */
+    private static void appendToStoreIfMissing(List<String> lines) throws IOException {
+        Map<String, List<String>> linesByAccount = new LinkedHashMap<>();
+        for (String line : lines) {
+            linesByAccount.computeIfAbsent(line.substring(0, line.indexOf('|')), key -> new ArrayList<>()).add(line);
+        }
+        for (Map.Entry<String, List<String>> account : linesByAccount.entrySet()) {
+            Set<String> present = new HashSet<>();
+            transactionStore.readAccount(account.getKey(), row -> present.add(row.line()));
+            for (String line : account.getValue()) {
+                if (present.add(line)) {
+                    appendToStore(account.getKey(), line);
+                }
             }
+        }
+    }
+
+    // A failed append surfaces as an IOException, so a fold that hits one keeps its records in the log
+    private static void appendToStore(String accountNumber, String line) throws IOException {
+        try {
+            transactionStore.append(accountNumber, line).join();
+        } catch (CompletionException e) {
+            throw new IOException("Transaction store append failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
 
+    /**
+     * Mark an account's transactions as deleted in the transaction store
+     */
+    private static void dropAccountTransactions(String accountNumber) {
+        if (transactionStore == null) return;
+        try {
+            transactionStore.dropAccount(accountNumber);
         } catch (IOException e) {
-            System.err.println("Error deleting account transactions: " + e.getMessage());
+            System.err.println("Error dropping transactions for " + accountNumber + ": " + e.getMessage());
         }
     }
 
     public static List<Transaction> loadTransactionsForAccount(String accountNumber) {
         List<Transaction> transactions = new ArrayList<>();
-        File file = new File(TRANSACTIONS_FILE);
+        forEachTransaction(accountNumber, transactions::add);
+        return transactions;
+    }
 
-        if (!file.exists()) {
-            return transactions;
-        }
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split("\\|");
-                if (parts.length >= 6 && parts[0].equals(accountNumber)) {
-                    String date = parts[1];
-                    String description = parts[2];
-                    double amount = Double.parseDouble(parts[3]);
-                    String type = parts[4];
-                    double balance = Double.parseDouble(parts[5]);
-
-                    Transaction transaction = new Transaction(date, description, amount, type, balance);
-                    transactions.add(transaction);
+    /**
+     * Hand one account's transactions to the action, oldest first. Rows from the transaction
+     * store are parsed and passed on one at a time without building a list.
+     */
+    public static void forEachTransaction(String accountNumber, Consumer<Transaction> action) {
+        try {
+            if (transactionStore != null) {
+                transactionStore.readAccount(accountNumber, row -> {
+                    if (row.fieldCount() >= 6) {
+                        action.accept(parseTransaction(row));
+                    }
+                });
+            } else {
+                syncPendingMutations();
+                // A tombstone hides earlier rows, so the text file is read fully before anything is passed on
+                List<Transaction> transactions = new ArrayList<>();
+                // Rows of other accounts are skipped by comparing bytes, without decoding them
+                RecordTokenizer rows = RecordTokenizer.open(Paths.get(TRANSACTIONS_FILE));
+                while (rows.next()) {
+                    if (!rows.fieldEquals(0, accountNumber)) continue;
+                    if (KeyedLogFile.isTombstone(rows)) {
+                        transactions.clear();
+                    } else if (rows.fieldCount() >= 6) {
+                        transactions.add(parseTransaction(rows));
+                    }
                 }
+                transactions.forEach(action);
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading transactions: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Load every account's transactions in one pass, grouped by account number
+     */
+    public static Map<String, List<Transaction>> loadAllTransactions() {
+        Map<String, List<Transaction>> transactionsByAccount = new HashMap<>();
+        forEachTransaction((accountNumber, transaction) ->
+                transactionsByAccount.computeIfAbsent(accountNumber, key -> new ArrayList<>()).add(transaction));
+        return transactionsByAccount;
+    }
+
+    /**
+     * Hand every stored transaction to the action with its account number
+     */
+    public static void forEachTransaction(BiConsumer<String, Transaction> action) {
+        try {
+            if (transactionStore != null) {
+                transactionStore.readAll(row -> {
+                    if (row.fieldCount() >= 6) {
+                        action.accept(row.field(0), parseTransaction(row));
+                    }
+                });
+            } else {
+                syncPendingMutations();
+                Map<String, List<Transaction>> transactionsByAccount = new LinkedHashMap<>();
+                RecordTokenizer rows = RecordTokenizer.open(Paths.get(TRANSACTIONS_FILE));
+                while (rows.next()) {
+                    if (KeyedLogFile.isTombstone(rows)) {
+                        transactionsByAccount.remove(rows.field(0));
+                    } else {
+                        addTransactionRow(transactionsByAccount, rows);
+                    }
+                }
+                transactionsByAccount.forEach((accountNumber, transactions) ->
+                        transactions.forEach(transaction -> action.accept(accountNumber, transaction)));
             }
         } catch (IOException e) {
             System.err.println("Error loading transactions: " + e.getMessage());
         }
-        return transactions;
+    }
+
+    private static void addTransactionRow(Map<String, List<Transaction>> transactionsByAccount, RecordTokenizer row) {
+        if (row.fieldCount() >= 6) {
+            transactionsByAccount.computeIfAbsent(row.field(0), key -> new ArrayList<>()).add(parseTransaction(row));
+        }
+    }
+
+    private static Transaction parseTransaction(RecordTokenizer row) {
+        String date = row.field(1);
+        String description = row.field(2);
+        long amount = row.moneyField(3);
+        String type = row.field(4);
+        long balance = row.moneyField(5);
+        if (row.fieldCount() < 9) {
+            // Written before events were numbered
+            return Transaction.ofThebe(date, description, amount, type, balance);
+        }
+        return Transaction.ofEvent(LedgerEvent.parse(row.field(8), type), row.longField(7),
+                date, description, amount, type, balance);
     }
 
     // ---------------- DEBUG METHODS ----------------
@@ -758,6 +697,7 @@ public class FileManager {
      * Debug method to check file contents
      */
     public static void debugFileContents() {
+        syncPendingMutations();
         try {
             System.out.println("=== DEBUG FILE CONTENTS ===");
 
@@ -780,6 +720,11 @@ public class FileManager {
                 System.out.println("Accounts file does not exist!");
             }
 
+            if (transactionStore != null) {
+                System.out.println("Transaction store: " + transactionStore.getSegmentCount() + " segments in "
+                        + TRANSACTION_STORE_DIR + "/ (transactions.txt is only read on first import)");
+            }
+
             // Check transactions file
             File transactionsFile = new File(TRANSACTIONS_FILE);
             if (transactionsFile.exists()) {
@@ -809,12 +754,12 @@ public class FileManager {
         public String accountNumber;
         public String customerID;
         public String accountType;
-        public double balance;
+        public long balance; // thebe; see openAccountTable for when it is current
         public String branch;
         public String extraData;
 
         public AccountData(String accountNumber, String customerID, String accountType,
-                           double balance, String branch, String extraData) {
+                           long balance, String branch, String extraData) {
             this.accountNumber = accountNumber;
             this.customerID = customerID;
             this.accountType = accountType;
@@ -842,5 +787,834 @@ public class FileManager {
         } catch (IOException e) {
             System.err.println("Error creating data files: " + e.getMessage());
         }
+
+        if (SHARED) {
+            openDataFileLocks();
+        }
+        openAccountTable();
+        openTransactionStore();
+        if (SHARED) {
+            foldLeftoverLogs();
+        }
+        openWriteAheadLog();
+        markDataFilesCurrent();
+    }
+
+    // ---------------- SHARED DATA DIRECTORY ----------------
+
+    /*
+     * With -Dbank.shared=true several processes (teller workstations) use one data directory.
+     * Balances live in the shared account table and change only through adjustBalance, which
+     * locks the account's record; the table's change sequence tells each process which accounts
+     * the others changed. The text files are appended to under their own locks in bank.lock, and
+     * transaction rows go to the shared transaction store.
+     *
+     * Each process has its own write-ahead log, bank.<pid>.wal, and holds a lock on it while it
+     * runs. A logged mutation that touches a text file is applied to it straight away, under the
+     * locks of the files it touches, so the others see it; the log covers a crash part-way through.
+     * A log nobody holds was left by a process that stopped, and the next process to start folds it.
+     */
+
+    private static synchronized void openDataFileLocks() {
+        if (dataFileLocks != null) return;
+        List<String> lockedFiles = new ArrayList<>(Arrays.asList(TEXT_FILES));
+        lockedFiles.add(WAL_FILE);
+        try {
+            dataFileLocks = new DataFileLocks(LOCK_FILE, lockedFiles);
+            System.out.println("Shared data directory: write-ahead log " + walFile + ", files locked per record and per file");
+        } catch (IOException e) {
+            System.err.println("Data file locks unavailable, writing without them: " + e.getMessage());
+        }
+    }
+
+    // Null when the directory is not shared
+    private static FileLock lockDataFile(String fileName) throws IOException {
+        return dataFileLocks != null ? dataFileLocks.lock(fileName) : null;
+    }
+
+    /**
+     * Fold the logs no running process holds: bank.wal from a run without sharing, and the logs of
+     * processes that stopped before folding theirs. Folded logs are deleted.
+     */
+    private static synchronized void foldLeftoverLogs() {
+        try (FileLock ignored = lockDataFile(WAL_FILE)) {
+            File[] logs = new File(".").listFiles((dir, name) ->
+                    (name.equals(WAL_FILE) || name.matches(SHARED_WAL_PATTERN)) && !name.equals(walFile));
+            if (logs == null) return;
+            for (File log : logs) {
+                foldLeftoverLog(log.getName());
+            }
+        } catch (IOException e) {
+            System.err.println("Error folding leftover write-ahead logs: " + e.getMessage());
+        }
+    }
+
+    private static void foldLeftoverLog(String logFile) throws IOException {
+        String ownLog = walFile;
+        walFile = logFile;
+        try {
+            writeAheadLog = new WriteAheadLog(logFile);
+            if (!writeAheadLog.tryLock()) {
+                return; // its process is still running
+            }
+            List<WriteAheadLog.Record> tail = writeAheadLog.readAll();
+            if (!tail.isEmpty()) {
+                System.out.println("Replaying " + tail.size() + " logged mutations left in " + logFile + "...");
+                replayIntoAccountTable(tail);
+                checkpoint();
+            }
+            if (writeAheadLog.getPendingRecords() == 0) {
+                Files.deleteIfExists(Paths.get(checkpointMarkerFile()));
+                Files.deleteIfExists(Paths.get(logFile));
+            }
+        } finally {
+            if (writeAheadLog != null) {
+                writeAheadLog.close();
+                writeAheadLog = null;
+            }
+            walFile = ownLog;
+        }
+    }
+
+    /**
+     * Add a signed amount to an account's balance in the shared account table if allowed (null for
+     * always) accepts the balance it replaces; an amount of zero only reads it. Returns the new
+     * balance, BankStore.BALANCE_REFUSED, or BankStore.BALANCE_NOT_STORED for an account that is
+     * not in the table yet.
+     */
+    public static long adjustBalance(String accountNumber, long amount, LongPredicate allowed) {
+        AccountTable table = accountTable;
+        if (table == null) {
+            return BankStore.BALANCE_NOT_STORED;
+        }
+        long balance;
+        try {
+            balance = table.adjustBalance(accountNumber, amount, allowed);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot lock account " + accountNumber, e);
+        }
+        if (balance == AccountTable.MISSING) {
+            return BankStore.BALANCE_NOT_STORED;
+        }
+        return balance == AccountTable.REFUSED ? BankStore.BALANCE_REFUSED : balance;
+    }
+
+    /**
+     * Accounts whose records other processes changed since the last call, or null if changes
+     * were missed and every account should be re-read
+     */
+    public static Set<String> takeChangedAccounts() {
+        AccountTable table = accountTable;
+        return table != null ? table.takeChangesElsewhere() : Collections.emptySet();
+    }
+
+    // ---------------- TRANSACTION STORE ----------------
+
+    /**
+     * Open the partitioned transaction store, importing transactions.txt the first time
+     */
+    public static synchronized void openTransactionStore() {
+        if (transactionStore != null) return;
+
+        boolean firstOpen = !TransactionStore.exists(TRANSACTION_STORE_DIR);
+        try {
+            transactionStore = new TransactionStore(TRANSACTION_STORE_DIR, TRANSACTION_PARTITIONS,
+                    TRANSACTION_SEGMENT_BYTES, TRANSACTION_DURABILITY, SHARED);
+            if (firstOpen) {
+                transactionStore.importLegacy(new File(TRANSACTIONS_FILE));
+            }
+        } catch (IOException e) {
+            System.err.println("Transaction store unavailable, using transactions.txt: " + e.getMessage());
+            transactionStore = null;
+        }
+    }
+
+    /**
+     * Every file the loaders read: the text files, the log and the transaction store.
+     * The account table is left out; its balance changes also reach accounts.txt through the log.
+     */
+    static List<Path> dataSourceFiles() throws IOException {
+        List<Path> sources = new ArrayList<>();
+        for (String name : new String[]{CUSTOMERS_FILE, PASSWORDS_FILE, ACCOUNTS_FILE, TRANSACTIONS_FILE, walFile}) {
+            sources.add(Paths.get(name));
+        }
+        Path store = Paths.get(TRANSACTION_STORE_DIR);
+        if (Files.isDirectory(store)) {
+            try (java.util.stream.Stream<Path> paths = Files.walk(store)) {
+                paths.filter(Files::isRegularFile).sorted().forEach(sources::add);
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Size and modification time of each file as "path|size|millis", or "path|missing"
+     */
+    static List<String> stamp(List<Path> paths) throws IOException {
+        List<String> stamp = new ArrayList<>(paths.size());
+        for (Path path : paths) {
+            if (Files.exists(path)) {
+                stamp.add(path + "|" + Files.size(path) + "|" + Files.getLastModifiedTime(path).toMillis());
+            } else {
+                stamp.add(path + "|missing");
+            }
+        }
+        return stamp;
+    }
+
+    // ---------------- EXTERNAL CHANGES ----------------
+
+    private static List<String> knownTextFiles;
+
+    private static List<String> textFileStamp() throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String name : TEXT_FILES) {
+            files.add(Paths.get(name));
+        }
+        return stamp(files);
+    }
+
+    /**
+     * True if one text data file is as markDataFilesCurrent last saw it; shared directories ask
+     * this per file while holding its lock, since other processes write the others meanwhile
+     */
+    private static synchronized boolean isDataFileCurrent(String fileName) throws IOException {
+        if (knownTextFiles == null) return false;
+        int index = Arrays.asList(TEXT_FILES).indexOf(fileName);
+        return knownTextFiles.get(index).equals(stamp(Collections.singletonList(Paths.get(fileName))).get(0));
+    }
+
+    /**
+     * Accept one text data file as it is now, after a write of ours made under its lock
+     */
+    private static synchronized void markDataFileCurrent(String fileName) {
+        if (knownTextFiles == null) return;
+        try {
+            List<String> known = new ArrayList<>(knownTextFiles);
+            known.set(Arrays.asList(TEXT_FILES).indexOf(fileName),
+                    stamp(Collections.singletonList(Paths.get(fileName))).get(0));
+            knownTextFiles = known;
+        } catch (IOException e) {
+            knownTextFiles = null;
+        }
+    }
+
+    /**
+     * Remember the text data files as they are now; called after every write of ours and after a full load
+     */
+    public static synchronized void markDataFilesCurrent() {
+        try {
+            knownTextFiles = textFileStamp();
+        } catch (IOException e) {
+            knownTextFiles = null;
+        }
+    }
+
+    /**
+     * True if another program changed a text data file since markDataFilesCurrent
+     */
+    public static synchronized boolean hasExternalChanges() {
+        if (knownTextFiles == null) return false;
+        try {
+            return !textFileStamp().equals(knownTextFiles);
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    // ---------------- ACCOUNT TABLE ----------------
+
+    /**
+     * Open the memory-mapped account table, importing accounts.txt the first time;
+     * accounts.txt is refreshed from it by exportAccountTable().
+     *
+     * Balances are rebuilt from each account's ledger events on load. Outside a shared directory
+     * the balance in the table and in accounts.txt is the one the account had when its record was
+     * last written, normally its opening balance, and is only used for accounts that have no
+     * numbered events yet.
+     * In a shared directory the table holds the live balances, changed through adjustBalance.
+     */
+    public static synchronized void openAccountTable() {
+        if (accountTable != null) return;
+
+        boolean firstOpen = !new File(ACCOUNT_TABLE_FILE).exists();
+        try {
+            accountTable = new AccountTable(ACCOUNT_TABLE_FILE, SHARED ? CHANGE_SEQUENCE_FILE : null);
+            if (firstOpen) {
+                accountTable.importFromText(new File(ACCOUNTS_FILE));
+            }
+        } catch (IOException e) {
+            System.err.println("Account table unavailable, using accounts.txt only: " + e.getMessage());
+            accountTable = null;
+        }
+    }
+
+    /**
+     * Write the account table back to accounts.txt
+     */
+    public static synchronized boolean exportAccountTable() {
+        if (accountTable == null) return false;
+        try (FileLock ignored = lockDataFile(ACCOUNTS_FILE)) {
+            boolean changedElsewhere = dataFileLocks != null ? !isDataFileCurrent(ACCOUNTS_FILE) : hasExternalChanges();
+            accountTable.exportToText(new File(ACCOUNTS_FILE));
+            dataFile(ACCOUNTS_FILE).invalidate();
+            if (!changedElsewhere && dataFileLocks != null) {
+                markDataFileCurrent(ACCOUNTS_FILE);
+            } else if (!changedElsewhere) {
+                markDataFilesCurrent();
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error exporting account table: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Flush and close the account table (used on shutdown and before a data reset)
+     */
+    public static synchronized void closeAccountTable() {
+        if (accountTable != null) {
+            accountTable.close();
+            accountTable = null;
+        }
+    }
+
+    // ---------------- WRITE-AHEAD LOG AND CHECKPOINTS ----------------
+
+    /**
+     * Record a mutation in the write-ahead log. If the log is not open the mutation
+     * is folded into the base files straight away.
+     */
+    private static synchronized boolean logMutation(String operation, String payload) {
+        return appendToLog(operation, payload) >= 0;
+    }
+
+    /**
+     * Log a mutation. Returns its log sequence, 0 if it was applied to the data files directly
+     * because the log is unavailable, or -1 if it could not be written at all.
+     */
+    private static synchronized long appendToLog(String operation, String payload) {
+        if (writeAheadLog != null) {
+            long sequence = 0;
+            try {
+                sequence = writeAheadLog.append(operation, payload);
+            } catch (IOException e) {
+                System.err.println("Error writing to write-ahead log, applying directly: " + e.getMessage());
+                // Fold what is logged first, so this mutation is not overwritten by an older one
+                checkpoint();
+            }
+            if (sequence > 0) {
+                if (SHARED) {
+                    applyToSharedFiles(new WriteAheadLog.Record(sequence, operation, payload));
+                }
+                if (writeAheadLog.getPendingRecords() >= CHECKPOINT_RECORD_THRESHOLD && checkpointer != null) {
+                    checkpointer.execute(FileManager::checkpoint);
+                }
+                return sequence;
+            }
+        }
+
+        try {
+            foldRecords(Collections.singletonList(new WriteAheadLog.Record(0, operation, payload)), new HashMap<>());
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Error applying " + operation + ": " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Apply a logged mutation to the text files it touches now, so other processes sharing the
+     * directory see it. The marker keeps the next checkpoint from applying it again; if it fails
+     * here, the checkpoint applies it.
+     */
+    private static void applyToSharedFiles(WriteAheadLog.Record record) {
+        List<WriteAheadLog.Record> records = Collections.singletonList(record);
+        for (String fileName : TEXT_FILES) {
+            if (touchesFile(records, fileName)) {
+                try {
+                    foldRecords(records, readCheckpointMarker());
+                } catch (IOException e) {
+                    System.err.println("Error applying " + record.operation + ", left in the log: " + e.getMessage());
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Make sure the base files reflect every logged mutation before they are read
+     */
+    static synchronized void syncPendingMutations() {
+        if (writeAheadLog != null && writeAheadLog.getPendingRecords() > 0) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Fold all logged mutations into the base files and truncate the log
+     */
+    public static synchronized void checkpoint() {
+        if (writeAheadLog == null || writeAheadLog.getPendingRecords() == 0) return;
+
+        try {
+            List<WriteAheadLog.Record> records = writeAheadLog.readAll();
+            foldRecords(records, readCheckpointMarker());
+            if (accountTable != null) {
+                accountTable.force();
+            }
+            if (transactionStore != null && transactionStore.getDurability() == GroupCommitWriter.Durability.ASYNC) {
+                transactionStore.force();
+            }
+            writeAheadLog.truncate();
+            rowsInStore.clear();
+            Files.deleteIfExists(Paths.get(checkpointMarkerFile()));
+            System.out.println("Checkpoint complete: " + records.size() + " mutations folded into data files");
+        } catch (IOException e) {
+            System.err.println("Checkpoint failed, mutations remain in the log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Apply mutation records to the base files by appending to them: saves and updates append
+     * the new record, deletes append a tombstone. Each touched file gets one forced append per
+     * fold, and the marker records the last sequence applied to it so a crash part-way through
+     * never applies a record twice.
+     *
+     * In a shared directory the lock of every file the records touch is held for the fold, taken
+     * in TEXT_FILES order, and what other processes appended to those files is read in first.
+     */
+    private static void foldRecords(List<WriteAheadLog.Record> records, Map<String, Long> applied) throws IOException {
+        if (dataFileLocks == null) {
+            applyRecords(records, applied);
+            return;
+        }
+        List<FileLock> locks = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        try {
+            for (String fileName : TEXT_FILES) {
+                if (touchesFile(records, fileName)) {
+                    locks.add(dataFileLocks.lock(fileName));
+                    dataFile(fileName).reloadIfChanged();
+                    if (isDataFileCurrent(fileName)) current.add(fileName);
+                }
+            }
+            applyRecords(records, applied);
+            for (String fileName : current) {
+                markDataFileCurrent(fileName);
+            }
+        } finally {
+            for (FileLock lock : locks) {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Whether applyRecords may read or append to the given text file for any of the records
+     */
+    private static boolean touchesFile(List<WriteAheadLog.Record> records, String fileName) {
+        boolean transactionsFile = TRANSACTIONS_FILE.equals(fileName) && transactionStore == null;
+        for (WriteAheadLog.Record record : records) {
+            switch (record.operation) {
+                case OP_SAVE_CUSTOMER:
+                case OP_UPDATE_CUSTOMER:
+                    if (CUSTOMERS_FILE.equals(fileName)) return true;
+                    break;
+                case OP_DELETE_CUSTOMER:
+                    return true;
+                case OP_SAVE_PASSWORD:
+                case OP_UPDATE_PASSWORD:
+                    if (PASSWORDS_FILE.equals(fileName)) return true;
+                    break;
+                case OP_SAVE_ACCOUNT:
+                case OP_UPDATE_ACCOUNT:
+                    if (ACCOUNTS_FILE.equals(fileName)) return true;
+                    break;
+                case OP_DELETE_ACCOUNT:
+                    if (ACCOUNTS_FILE.equals(fileName) || transactionsFile) return true;
+                    break;
+                default:
+                    // Posting batches and transactions only append to a text file without the store
+                    if (transactionsFile) return true;
+            }
+        }
+        return false;
+    }
+
+    private static void applyRecords(List<WriteAheadLog.Record> records, Map<String, Long> applied) throws IOException {
+        boolean changedElsewhere = hasExternalChanges();
+        Set<KeyedLogFile> touched = new LinkedHashSet<>();
+        String timestamp = LocalDateTime.now().format(formatter);
+        long lastSequence = 0;
+
+        for (WriteAheadLog.Record record : records) {
+            long seq = record.sequence;
+            lastSequence = Math.max(lastSequence, seq);
+            String key = recordKey(record.payload);
+
+            switch (record.operation) {
+                case OP_SAVE_CUSTOMER:
+                    if (isPending(applied, CUSTOMERS_FILE, seq)) {
+                        append(touched, CUSTOMERS_FILE, key, record.payload);
+                    }
+                    break;
+                case OP_UPDATE_CUSTOMER:
+                    if (isPending(applied, CUSTOMERS_FILE, seq)) {
+                        appendIfPresent(touched, CUSTOMERS_FILE, key, record.payload, "Customer");
+                    }
+                    break;
+                case OP_DELETE_CUSTOMER: {
+                    if (isPending(applied, CUSTOMERS_FILE, seq)) {
+                        delete(touched, CUSTOMERS_FILE, key, timestamp);
+                    }
+                    if (isPending(applied, PASSWORDS_FILE, seq)) {
+                        delete(touched, PASSWORDS_FILE, key, timestamp);
+                    }
+                    List<String> accountNumbers = new ArrayList<>();
+                    for (String line : dataFile(ACCOUNTS_FILE).liveRecords()) {
+                        String[] parts = line.split("\\|", 3);
+                        if (parts.length >= 2 && parts[1].equals(key)) {
+                            accountNumbers.add(parts[0]);
+                        }
+                    }
+                    for (String accountNumber : accountNumbers) {
+                        if (isPending(applied, ACCOUNTS_FILE, seq)) {
+                            delete(touched, ACCOUNTS_FILE, accountNumber, timestamp);
+                        }
+                        if (transactionStore == null && isPending(applied, TRANSACTIONS_FILE, seq)) {
+                            delete(touched, TRANSACTIONS_FILE, accountNumber, timestamp);
+                        }
+                    }
+                    break;
+                }
+                case OP_SAVE_PASSWORD:
+                    if (isPending(applied, PASSWORDS_FILE, seq)) {
+                        append(touched, PASSWORDS_FILE, key, record.payload);
+                    }
+                    break;
+                case OP_UPDATE_PASSWORD:
+                    if (isPending(applied, PASSWORDS_FILE, seq)) {
+                        appendIfPresent(touched, PASSWORDS_FILE, key, record.payload, "Password");
+                    }
+                    break;
+                case OP_SAVE_ACCOUNT:
+                    if (isPending(applied, ACCOUNTS_FILE, seq)) {
+                        append(touched, ACCOUNTS_FILE, key, record.payload);
+                    }
+                    break;
+                case OP_UPDATE_ACCOUNT:
+                    if (isPending(applied, ACCOUNTS_FILE, seq)) {
+                        appendIfPresent(touched, ACCOUNTS_FILE, key, record.payload, "Account");
+                    }
+                    break;
+                case OP_POST_BATCH: {
+                    PostingBatchRecord batch = new PostingBatchRecord(record.payload);
+                    if (!isPending(applied, TRANSACTIONS_FILE, seq)) break;
+                    if (transactionStore != null) {
+                        // Rows stored when the batch was logged are skipped; after a crash or failure the store is checked
+                        if (!storedWhenLogged(rowsInStore.remove(seq))) {
+                            appendToStoreIfMissing(batch.rows);
+                        }
+                        applied.put(TRANSACTIONS_FILE, seq);
+                        writeCheckpointMarker(applied);
+                    } else {
+                        for (String row : batch.rows) {
+                            append(touched, TRANSACTIONS_FILE, row.substring(0, row.indexOf('|')), row);
+                        }
+                    }
+                    break;
+                }
+                case OP_DELETE_ACCOUNT:
+                    if (isPending(applied, ACCOUNTS_FILE, seq)) {
+                        delete(touched, ACCOUNTS_FILE, key, timestamp);
+                    }
+                    if (transactionStore == null && isPending(applied, TRANSACTIONS_FILE, seq)) {
+                        delete(touched, TRANSACTIONS_FILE, key, timestamp);
+                    }
+                    break;
+                case OP_SAVE_TRANSACTION:
+                    // Only logged when the transaction store could not be written
+                    if (!isPending(applied, TRANSACTIONS_FILE, seq)) break;
+                    if (transactionStore != null) {
+                        appendToStore(key, record.payload);
+                        applied.put(TRANSACTIONS_FILE, seq);
+                        writeCheckpointMarker(applied);
+                    } else {
+                        append(touched, TRANSACTIONS_FILE, key, record.payload);
+                    }
+                    break;
+                default:
+                    System.err.println("Unknown write-ahead log operation: " + record.operation);
+            }
+        }
+
+        for (KeyedLogFile file : touched) {
+            file.flush();
+            applied.put(file.getName(), lastSequence);
+            writeCheckpointMarker(applied);
+        }
+        // Our own appends are not an external change, but one that happened before them still is
+        if (!changedElsewhere && dataFileLocks == null) {
+            markDataFilesCurrent();
+        }
+    }
+
+    private static boolean isPending(Map<String, Long> applied, String fileName, long sequence) {
+        return sequence == 0 || sequence > applied.getOrDefault(fileName, 0L);
+    }
+
+    /**
+     * The append-only view of a base file, indexed the first time it is used
+     */
+    private static KeyedLogFile dataFile(String fileName) {
+        return dataFiles.computeIfAbsent(fileName, name -> new KeyedLogFile(name, TRANSACTIONS_FILE.equals(name)));
+    }
+
+    private static void append(Set<KeyedLogFile> touched, String fileName, String key, String line) throws IOException {
+        KeyedLogFile file = dataFile(fileName);
+        file.append(key, line);
+        touched.add(file);
+    }
+
+    private static void appendIfPresent(Set<KeyedLogFile> touched, String fileName, String key, String line,
+                                        String what) throws IOException {
+        if (dataFile(fileName).contains(key)) {
+            append(touched, fileName, key, line);
+        } else {
+            System.err.println(what + " not found for update: " + key);
+        }
+    }
+
+    private static void delete(Set<KeyedLogFile> touched, String fileName, String key, String timestamp) throws IOException {
+        KeyedLogFile file = dataFile(fileName);
+        if (file.delete(key, timestamp)) {
+            touched.add(file);
+        }
+    }
+
+    /**
+     * First field of a pipe-delimited record
+     */
+    private static String recordKey(String line) {
+        int separator = line.indexOf('|');
+        return separator >= 0 ? line.substring(0, separator) : line;
+    }
+
+    // ---------------- COMPACTION ----------------
+
+    /**
+     * Rewrite base files, and transaction store partitions, whose share of superseded
+     * records and tombstones has reached COMPACTION_GARBAGE_RATIO
+     */
+    public static synchronized void compact() {
+        syncPendingMutations();
+        boolean changedElsewhere = hasExternalChanges();
+        for (String fileName : TEXT_FILES) {
+            try (FileLock ignored = lockDataFile(fileName)) {
+                KeyedLogFile file = dataFile(fileName);
+                file.reloadIfChanged();
+                boolean current = dataFileLocks != null && isDataFileCurrent(fileName);
+                if (file.getGarbageRows() >= COMPACTION_MIN_GARBAGE_ROWS
+                        && file.getGarbageRatio() >= COMPACTION_GARBAGE_RATIO) {
+                    file.compact();
+                    if (current) markDataFileCurrent(fileName);
+                }
+            } catch (IOException e) {
+                System.err.println("Error compacting " + fileName + ": " + e.getMessage());
+            }
+        }
+        if (!changedElsewhere && dataFileLocks == null) {
+            markDataFilesCurrent();
+        }
+        if (transactionStore != null) {
+            try {
+                transactionStore.compact(COMPACTION_GARBAGE_RATIO);
+            } catch (IOException e) {
+                System.err.println("Error compacting transaction store: " + e.getMessage());
+            }
+        }
+    }
+
+    private static List<String> readLines(String fileName) throws IOException {
+        Path path = Paths.get(fileName);
+        if (!Files.exists(path)) {
+            return new ArrayList<>();
+        }
+        List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(path)) {
+            if (!line.isEmpty()) lines.add(line);
+        }
+        return lines;
+    }
+
+    /**
+     * Write a file's new contents beside it and move it into place in one step,
+     * so a crash leaves either the old or the new file, never neither.
+     */
+    private static void replaceFile(String fileName, Collection<String> lines) throws IOException {
+        Path target = Paths.get(fileName);
+        Path temp = Paths.get(fileName + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Beside the log it belongs to: bank.wal.ckpt, bank.<pid>.wal.ckpt
+    private static String checkpointMarkerFile() {
+        return walFile + CHECKPOINT_MARKER_SUFFIX;
+    }
+
+    private static Map<String, Long> readCheckpointMarker() throws IOException {
+        Map<String, Long> applied = new HashMap<>();
+        for (String line : readLines(checkpointMarkerFile())) {
+            String[] parts = line.split("\\|");
+            if (parts.length == 2) {
+                applied.put(parts[0], Long.parseLong(parts[1]));
+            }
+        }
+        return applied;
+    }
+
+    private static void writeCheckpointMarker(Map<String, Long> applied) throws IOException {
+        if (writeAheadLog == null) return;
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : applied.entrySet()) {
+            lines.add(entry.getKey() + "|" + entry.getValue());
+        }
+        replaceFile(checkpointMarkerFile(), lines);
+    }
+
+    /**
+     * Open the write-ahead log, replay any tail left by the previous run and
+     * start the background checkpointer. In a shared directory the log is locked while it is open.
+     */
+    private static synchronized void openWriteAheadLog() {
+        if (writeAheadLog != null) return;
+
+        try {
+            writeAheadLog = new WriteAheadLog(walFile);
+            if (SHARED && !writeAheadLog.tryLock()) {
+                writeAheadLog.close();
+                throw new IOException(walFile + " is held by another process");
+            }
+            List<WriteAheadLog.Record> tail = writeAheadLog.readAll();
+            if (tail.isEmpty()) {
+                Files.deleteIfExists(Paths.get(checkpointMarkerFile()));
+            } else {
+                System.out.println("Replaying " + tail.size() + " logged mutations from previous run...");
+                replayIntoAccountTable(tail);
+                checkpoint();
+            }
+        } catch (IOException e) {
+            System.err.println("Write-ahead log unavailable, writing data files directly: " + e.getMessage());
+            writeAheadLog = null;
+            return;
+        }
+
+        checkpointer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wal-checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointer.scheduleWithFixedDelay(FileManager::checkpoint,
+                CHECKPOINT_INTERVAL_SECONDS, CHECKPOINT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        checkpointer.scheduleWithFixedDelay(FileManager::compact,
+                COMPACTION_INTERVAL_SECONDS, COMPACTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * The account table may have missed in-place writes that were not flushed before a crash
+     */
+    private static void replayIntoAccountTable(List<WriteAheadLog.Record> records) throws IOException {
+        if (accountTable == null) return;
+
+        for (WriteAheadLog.Record record : records) {
+            if (OP_POST_BATCH.equals(record.operation)) {
+                continue; // transaction rows only
+            }
+            String[] parts = record.payload.split("\\|");
+            switch (record.operation) {
+                case OP_SAVE_ACCOUNT:
+                case OP_UPDATE_ACCOUNT:
+                    if (parts.length >= 6) {
+                        accountTable.put(new AccountData(parts[0], parts[1], parts[2],
+                                Money.parse(parts[3]), parts[4], parts[5]));
+                    }
+                    break;
+                case OP_DELETE_ACCOUNT:
+                    accountTable.remove(parts[0]);
+                    break;
+                case OP_DELETE_CUSTOMER:
+                    accountTable.removeByCustomer(parts[0]);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Fold the log, write accounts.txt from the account table and release all open files
+     */
+    public static void shutdown() {
+        shutdown(false);
+    }
+
+    /**
+     * Fold the log and release every store. With writeSnapshot set, a binary snapshot is
+     * taken after the last change to the data files and before the transaction store closes.
+     */
+    public static void shutdown(boolean writeSnapshot) {
+        // A background snapshot needs this class's lock to read the stores, so let it finish first
+        SnapshotStore.stopPeriodicSnapshots();
+        closeStores(writeSnapshot);
+    }
+
+    private static synchronized void closeStores(boolean writeSnapshot) {
+        if (checkpointer != null) {
+            checkpointer.shutdown();
+            checkpointer = null;
+        }
+        checkpoint();
+        if (writeAheadLog != null) {
+            if (SHARED && writeAheadLog.getPendingRecords() == 0) {
+                // Deleted while still locked, so no starting process takes it for a leftover
+                try {
+                    Files.deleteIfExists(Paths.get(checkpointMarkerFile()));
+                    Files.deleteIfExists(Paths.get(walFile));
+                } catch (IOException e) {
+                    System.err.println("Error deleting " + walFile + ": " + e.getMessage());
+                }
+            }
+            writeAheadLog.close();
+            writeAheadLog = null;
+        }
+        exportAccountTable();
+        if (writeSnapshot) {
+            SnapshotStore.writeSnapshot();
+        }
+        closeAccountTable();
+        if (transactionStore != null) {
+            transactionStore.close();
+            transactionStore = null;
+        }
+        if (dataFileLocks != null) {
+            dataFileLocks.close();
+            dataFileLocks = null;
+        }
+        dataFiles.clear();
     }
-}
\ No newline at end of file
+}
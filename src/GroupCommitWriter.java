@@ -0,0 +1,232 @@
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Long-lived appender that batches records from many callers.
+ * A single writer thread drains a bounded queue, writes every pending record and then
+ * forces each touched file once per batch. Each caller gets a future that completes
+ * when its record is as durable as the configured mode promises.
+ */
+public class GroupCommitWriter {
+
+    public enum Durability {
+        PER_RECORD,   // force after every record
+        GROUP_COMMIT, // wait up to the group window for more records, then one force per batch
+        ASYNC         // write without forcing; files are forced on rollover and close
+    }
+
+    /**
+     * A file the writer can append to and force. Records for one target are handed over
+     * together so the target can write them with a single system call.
+     */
+    public interface Target {
+        void write(List<String> records) throws IOException;
+        void force() throws IOException;
+    }
+
+    private static class Entry {
+        final Target target;
+        final String record;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Entry(Target target, String record) {
+            this.target = target;
+            this.record = record;
+        }
+    }
+
+    private static final int QUEUE_CAPACITY = 65536;
+    private static final int MAX_BATCH = 4096;
+
+    private final Durability durability;
+    private final long groupWindowMicros;
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Set<Target> unforced = new HashSet<>();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+    // Held shared by submit from its check of running until the record is queued, exclusively by close
+    private final ReadWriteLock closing = new ReentrantReadWriteLock();
+
+    private long batches = 0;
+    private long records = 0;
+
+    public GroupCommitWriter(String name, Durability durability, long groupWindowMicros) {
+        this.durability = durability;
+        this.groupWindowMicros = groupWindowMicros;
+        this.writerThread = new Thread(this::run, name);
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+        System.out.println("Group commit writer started: " + name + " (" + describe() + ")");
+    }
+
+    /**
+     * Build a writer from a setting such as "record", "group:200" (window in microseconds) or "async"
+     */
+    public static GroupCommitWriter fromSetting(String name, String setting) {
+        String value = setting != null ? setting.trim().toLowerCase() : "";
+        if (value.equals("record")) {
+            return new GroupCommitWriter(name, Durability.PER_RECORD, 0);
+        }
+        if (value.equals("async")) {
+            return new GroupCommitWriter(name, Durability.ASYNC, 0);
+        }
+        long window = 200;
+        if (value.startsWith("group:")) {
+            try {
+                window = Long.parseLong(value.substring("group:".length()));
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid group commit window '" + setting + "', using " + window + "us");
+            }
+        }
+        return new GroupCommitWriter(name, Durability.GROUP_COMMIT, window);
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Queue a record for the target. Blocks while the queue is full and the writer thread is alive.
+     */
+    public CompletableFuture<Void> submit(Target target, String record) {
+        Entry entry = new Entry(target, record);
+        closing.readLock().lock();
+        try {
+            if (!running) {
+                entry.done.completeExceptionally(new IOException("Group commit writer is closed"));
+                return entry.done;
+            }
+            while (!queue.offer(entry, 100, TimeUnit.MILLISECONDS)) {
+                if (!writerThread.isAlive()) {
+                    entry.done.completeExceptionally(new IOException("Group commit writer thread has stopped"));
+                    return entry.done;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            entry.done.completeExceptionally(e);
+        } finally {
+            closing.readLock().unlock();
+        }
+        return entry.done;
+    }
+
+    // ---------------- WRITER THREAD ----------------
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+
+                batch.add(first);
+                if (durability == Durability.GROUP_COMMIT && groupWindowMicros > 0) {
+                    long deadline = System.nanoTime() + groupWindowMicros * 1000;
+                    while (batch.size() < MAX_BATCH) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) break;
+                        Entry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) break;
+                        batch.add(next);
+                        queue.drainTo(batch, MAX_BATCH - batch.size());
+                    }
+                } else if (durability != Durability.PER_RECORD) {
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                }
+
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<Entry> batch) {
+        Map<Target, List<String>> byTarget = new LinkedHashMap<>();
+        for (Entry entry : batch) {
+            byTarget.computeIfAbsent(entry.target, target -> new ArrayList<>()).add(entry.record);
+        }
+
+        Map<Target, IOException> failures = new HashMap<>();
+        for (Map.Entry<Target, List<String>> pending : byTarget.entrySet()) {
+            try {
+                pending.getKey().write(pending.getValue());
+                unforced.add(pending.getKey());
+            } catch (IOException e) {
+                failures.put(pending.getKey(), e);
+            }
+        }
+
+        if (durability != Durability.ASYNC) {
+            forceAll(failures);
+        }
+
+        for (Entry entry : batch) {
+            IOException failure = failures.get(entry.target);
+            if (failure != null) {
+                entry.done.completeExceptionally(failure);
+            } else {
+                entry.done.complete(null);
+            }
+        }
+        batches++;
+        records += batch.size();
+    }
+
+    private void forceAll(Map<Target, IOException> failures) {
+        for (Target target : unforced) {
+            try {
+                target.force();
+            } catch (IOException e) {
+                failures.put(target, e);
+            }
+        }
+        unforced.clear();
+    }
+
+    /**
+     * Stop accepting records, write everything still queued and force all files
+     */
+    public void close() {
+        // Waits for submits that saw the writer running to queue their records, so the writer sees them
+        closing.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            closing.writeLock().unlock();
+        }
+        // No interrupt: interrupting a thread inside FileChannel.write closes the channel
+        try {
+            writerThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            System.out.println("Group commit writer still busy after 5s; it finishes the queue in the background");
+            return;
+        }
+        // Records are only left over if the writer thread died early
+        List<Entry> leftover = new ArrayList<>();
+        queue.drainTo(leftover);
+        for (Entry entry : leftover) {
+            entry.done.completeExceptionally(new IOException("Group commit writer is closed"));
+        }
+        forceAll(new HashMap<>());
+        System.out.println("Group commit writer closed: " + records + " records in " + batches + " batches");
+    }
+
+    private String describe() {
+        switch (durability) {
+            case PER_RECORD: return "force per record";
+            case ASYNC: return "async, no force";
+            default: return "group commit, " + groupWindowMicros + "us window";
+        }
+    }
+}
@@ -0,0 +1,219 @@
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Keeps every store in memory and writes nothing to disk. Useful for demos, benchmarks and
+ * trying out the application without touching the data files; everything is lost on exit.
+ *
+ * Objects are copied on the way in and out, so callers see the same isolation as with the
+ * file engine: changing a loaded customer does nothing until it is saved again.
+ */
+public class InMemoryBankStore implements BankStore {
+    private final Map<String, Customer> customers = new LinkedHashMap<>();
+    private final Map<String, String> passwords = new LinkedHashMap<>();
+    private final Map<String, FileManager.AccountData> accounts = new LinkedHashMap<>();
+    private final Map<String, List<Transaction>> transactions = new HashMap<>();
+
+    @Override
+    public String getName() {
+        return "memory";
+    }
+
+    @Override
+    public void open() {
+        System.out.println("Using in-memory store; data will not be saved");
+    }
+
+    @Override
+    public void close(boolean writeSnapshot) {
+        // Nothing to flush
+    }
+
+    @Override
+    public synchronized void reset() {
+        customers.clear();
+        passwords.clear();
+        accounts.clear();
+        transactions.clear();
+    }
+
+    // ---------------- CUSTOMERS ----------------
+
+    @Override
+    public synchronized boolean saveCustomer(Customer customer) {
+        customers.put(customer.getCustomerID(), copyOf(customer));
+        return true;
+    }
+
+    @Override
+    public synchronized boolean updateCustomer(Customer customer) {
+        if (!customers.containsKey(customer.getCustomerID())) {
+            return false;
+        }
+        customers.put(customer.getCustomerID(), copyOf(customer));
+        return true;
+    }
+
+    @Override
+    public synchronized boolean deleteCustomer(String customerID) {
+        if (customers.remove(customerID) == null) {
+            return false;
+        }
+        passwords.remove(customerID);
+        Iterator<FileManager.AccountData> owned = accounts.values().iterator();
+        while (owned.hasNext()) {
+            FileManager.AccountData account = owned.next();
+            if (customerID.equals(account.customerID)) {
+                transactions.remove(account.accountNumber);
+                owned.remove();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized Customer loadCustomer(String customerID) {
+        Customer customer = customers.get(customerID);
+        return customer != null ? copyOf(customer) : null;
+    }
+
+    @Override
+    public synchronized boolean customerExists(String customerID) {
+        return customers.containsKey(customerID);
+    }
+
+    @Override
+    public synchronized Map<String, Customer> loadAllCustomers() {
+        Map<String, Customer> loaded = new HashMap<>(customers.size() * 2);
+        for (Customer customer : customers.values()) {
+            loaded.put(customer.getCustomerID(), copyOf(customer));
+        }
+        return loaded;
+    }
+
+    // ---------------- PASSWORDS ----------------
+
+    @Override
+    public synchronized boolean savePassword(String customerID, String passwordHash) {
+        passwords.put(customerID, passwordHash);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean updatePassword(String customerID, String passwordHash) {
+        return passwords.replace(customerID, passwordHash) != null;
+    }
+
+    @Override
+    public synchronized String loadPassword(String customerID) {
+        return passwords.get(customerID);
+    }
+
+    @Override
+    public synchronized Map<String, String> loadAllPasswords() {
+        return new HashMap<>(passwords);
+    }
+
+    // ---------------- ACCOUNTS ----------------
+
+    @Override
+    public synchronized void saveAccount(Account account, String customerID) {
+        accounts.put(account.getAccountNumber(), FileManager.accountData(account, customerID));
+    }
+
+    @Override
+    public synchronized boolean updateAccount(Account account) {
+        FileManager.AccountData stored = accounts.get(account.getAccountNumber());
+        if (stored == null) {
+            return false;
+        }
+        accounts.put(account.getAccountNumber(), FileManager.accountData(account, stored.customerID));
+        return true;
+    }
+
+    @Override
+    public synchronized boolean deleteAccount(String accountNumber) {
+        transactions.remove(accountNumber);
+        return accounts.remove(accountNumber) != null;
+    }
+
+    @Override
+    public synchronized List<FileManager.AccountData> loadAllAccounts() {
+        List<FileManager.AccountData> loaded = new ArrayList<>(accounts.size());
+        for (FileManager.AccountData account : accounts.values()) {
+            loaded.add(new FileManager.AccountData(account.accountNumber, account.customerID,
+                    account.accountType, account.balance, account.branch, account.extraData));
+        }
+        return loaded;
+    }
+
+    // ---------------- TRANSACTIONS ----------------
+
+    @Override
+    public synchronized void saveTransaction(Transaction transaction, String accountNumber) {
+        transactions.computeIfAbsent(accountNumber, key -> new ArrayList<>()).add(copyOf(transaction));
+    }
+
+    @Override
+    public CompletableFuture<Void> saveTransactionAsync(Transaction transaction, String accountNumber) {
+        saveTransaction(transaction, accountNumber);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public synchronized void saveTransactions(String accountNumber, List<Transaction> batch) {
+        List<Transaction> history = transactions.computeIfAbsent(accountNumber, key -> new ArrayList<>());
+        for (Transaction transaction : batch) {
+            history.add(copyOf(transaction));
+        }
+    }
+
+    @Override
+    public void forEachTransaction(String accountNumber, Consumer<Transaction> action) {
+        List<Transaction> history;
+        synchronized (this) {
+            history = new ArrayList<>(transactions.getOrDefault(accountNumber, Collections.emptyList()));
+        }
+        for (Transaction transaction : history) {
+            action.accept(copyOf(transaction));
+        }
+    }
+
+    @Override
+    public void forEachTransaction(BiConsumer<String, Transaction> action) {
+        Map<String, List<Transaction>> all = new LinkedHashMap<>();
+        synchronized (this) {
+            transactions.forEach((accountNumber, history) -> all.put(accountNumber, new ArrayList<>(history)));
+        }
+        all.forEach((accountNumber, history) -> {
+            for (Transaction transaction : history) {
+                action.accept(accountNumber, copyOf(transaction));
+            }
+        });
+    }
+
+    // ---------------- TRANSFERS ----------------
+
+    @Override
+    public synchronized boolean savePostings(Map<String, List<Transaction>> transactionsByAccount) {
+        if (!accounts.keySet().containsAll(transactionsByAccount.keySet())) {
+            return false;
+        }
+        transactionsByAccount.forEach(this::saveTransactions);
+        return true;
+    }
+
+    // ---------------- COPIES ----------------
+
+    private static Customer copyOf(Customer customer) {
+        return Customer.copyOf(customer);
+    }
+
+    private static Transaction copyOf(Transaction transaction) {
+        return Transaction.ofEvent(transaction.getEvent(), transaction.getSequence(), transaction.getDate(),
+                transaction.getDescription(), transaction.getAmountThebe(), transaction.getType(),
+                transaction.getBalanceThebe());
+    }
+}
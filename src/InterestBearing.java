@@ -2,4 +2,14 @@ public interface InterestBearing {
     void calculateInterest();
 
     double getInterestRate();
+
+    /**
+     * Interest in thebe due on the given balance in thebe
+     */
+    long interestOn(long balance);
+
+    /**
+     * Description of the interest row in the account history
+     */
+    String getInterestDescription();
 }
@@ -1,22 +1,22 @@
+import java.math.RoundingMode;
+
 public class Investment extends Account implements Withdrawal, InterestBearing {
     private double interestRate;
-    private static final double MIN_BALANCE = 1000;
+    private static final long MIN_BALANCE = Money.ofPula(1000); // thebe
 
     public Investment(String accountNumber, String branch, Customer customer, double initialDeposit, double interestRate) {
         super(accountNumber, branch, customer);
         this.interestRate = interestRate;
-        if (initialDeposit < MIN_BALANCE) {
-            throw new IllegalArgumentException("Investment account requires minimum deposit of P" + MIN_BALANCE);
+        if (Money.ofPula(initialDeposit) < MIN_BALANCE) {
+            throw new IllegalArgumentException("Investment account requires minimum deposit of P" + Money.format(MIN_BALANCE));
         }
-        this.balance = initialDeposit;
-        // Add initial deposit transaction
-        addTransaction(new Transaction(
-                java.time.LocalDate.now().toString(),
-                "Initial Deposit",
-                initialDeposit,
-                "Deposit",
-                balance
-        ));
+        // The initial deposit is posted and stored by whoever opens the account
+    }
+
+    // Constructor for loading from file; balance is in thebe
+    public Investment(String accountNumber, Customer customer, long balance, double interestRate) {
+        super(accountNumber, customer, balance);
+        this.interestRate = interestRate;
     }
 
     @Override
@@ -26,18 +26,22 @@ public class Investment extends Account implements Withdrawal, InterestBearing {
 
     @Override
     public boolean withdraw(double amount, String description) {
-        if (canWithdraw(amount)) {
-            balance -= amount;
-            addTransaction(new Transaction(
+        long thebe = Money.ofPula(amount);
+        long newBalance = tryDebit(thebe);
+        if (newBalance != REFUSED) {
+            Transaction transaction = newEvent(
+                    LedgerEvent.WITHDRAWN,
                     java.time.LocalDate.now().toString(),
                     description,
-                    -amount,
-                    "Withdrawal",
-                    balance
-            ));
+                    thebe,
+                    "WITHDRAWAL",
+                    newBalance
+            );
+            addTransaction(transaction);
+            transaction.saveTransaction(this.accountNumber);
             return true;
         } else {
-            System.out.println("Withdrawal denied. Investment account must maintain minimum balance of P" + MIN_BALANCE);
+            System.out.println("Withdrawal denied. Investment account must maintain minimum balance of P" + Money.format(MIN_BALANCE));
             return false;
         }
     }
@@ -48,8 +52,8 @@ public class Investment extends Account implements Withdrawal, InterestBearing {
     }
 
     @Override
-    protected boolean canWithdraw(double amount) {
-        return amount > 0 && amount <= balance && (balance - amount) >= MIN_BALANCE;
+    protected boolean canWithdraw(long balance, long amount) {
+        return amount > 0 && amount <= balance && Money.subtract(balance, amount) >= MIN_BALANCE;
     }
 
     @Override
@@ -59,13 +63,23 @@ public class Investment extends Account implements Withdrawal, InterestBearing {
 
     @Override
     public void calculateInterest() {
-        double interest = balance * interestRate;
+        long interest = interestOn(getBalanceThebe());
         if (interest > 0) {
-            deposit(interest, "Monthly Interest");
-            System.out.println("Added P " + String.format("%.2f", interest) + " interest to investment account " + accountNumber);
+            credit(LedgerEvent.INTEREST_PAID, interest, getInterestDescription());
+            System.out.println("Added P " + Money.format(interest) + " interest to investment account " + accountNumber);
         }
     }
 
+    @Override
+    public long interestOn(long balance) {
+        return Money.applyRate(balance, interestRate, RoundingMode.HALF_EVEN);
+    }
+
+    @Override
+    public String getInterestDescription() {
+        return "Monthly Interest";
+    }
+
     @Override
     public double getInterestRate() {
         return interestRate;
@@ -76,13 +90,13 @@ public class Investment extends Account implements Withdrawal, InterestBearing {
     }
 
     public double getMinBalance() {
-        return MIN_BALANCE;
+        return Money.toPula(MIN_BALANCE);
     }
 
     @Override
     public String toString() {
         return "Investment Account " + accountNumber +
-                " (Balance: P " + String.format("%.2f", balance) +
+                " (Balance: P " + Money.format(getBalanceThebe()) +
                 ", Interest Rate: " + getInterestRatePercentage() + ")";
     }
 }
\ No newline at end of file
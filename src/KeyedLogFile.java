@@ -0,0 +1,259 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * A pipe-delimited data file that is only ever appended to between compactions.
+ * The first field of each record is its key. In a single-row file the last record for a key
+ * wins; in a multi-row file (transactions) every record for a key is kept. A delete appends a
+ * tombstone "key|DELETED|timestamp" that hides every earlier record for the key.
+ *
+ * Superseded records and tombstones are garbage; compact() rewrites the file with only the live
+ * records once the garbage ratio is high enough.
+ *
+ * When several processes share the file, each calls reloadIfChanged() under the file's lock
+ * before appending, so records another process appended are in the index first.
+ */
+public class KeyedLogFile {
+    public static final String TOMBSTONE = "DELETED";
+
+    private final Path path;
+    private final boolean multiRow;
+    private final Map<String, String> latest = new LinkedHashMap<>();   // single-row: key -> live record
+    private final Map<String, Integer> rowCounts = new HashMap<>();     // multi-row: key -> live records
+    private final StringBuilder pending = new StringBuilder();
+    private boolean loaded = false;
+    private boolean needsNewline = false;
+    private long totalRows = 0;
+    private long liveRows = 0;
+    private Object knownFileKey; // the file as this process last left it
+    private long knownSize = -1;
+
+    public KeyedLogFile(String fileName, boolean multiRow) {
+        this.path = Paths.get(fileName);
+        this.multiRow = multiRow;
+    }
+
+    public String getName() {
+        return path.toString();
+    }
+
+    /**
+     * True for a tombstone record; readers drop everything they hold for its key
+     */
+    public static boolean isTombstone(RecordTokenizer row) {
+        return row.fieldCount() == 3 && row.fieldEquals(1, TOMBSTONE);
+    }
+
+    public static String tombstone(String key, String timestamp) {
+        return key + "|" + TOMBSTONE + "|" + timestamp;
+    }
+
+    // ---------------- INDEX ----------------
+
+    private void ensureLoaded() throws IOException {
+        if (loaded) return;
+
+        RecordTokenizer rows = RecordTokenizer.open(path);
+        while (rows.next()) {
+            totalRows++;
+            String key = rows.field(0);
+            if (isTombstone(rows)) {
+                removeLive(key);
+            } else if (multiRow) {
+                rowCounts.merge(key, 1, Integer::sum);
+                liveRows++;
+            } else {
+                if (latest.put(key, rows.line()) == null) liveRows++;
+            }
+        }
+        // A crash can leave a torn last record; start the next append on a fresh line
+        needsNewline = Files.exists(path) && Files.size(path) > 0 && !endsWithNewline();
+        loaded = true;
+        rememberState();
+    }
+
+    private void rememberState() throws IOException {
+        if (Files.exists(path)) {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            knownFileKey = attributes.fileKey();
+            knownSize = attributes.size();
+        } else {
+            knownFileKey = null;
+            knownSize = -1;
+        }
+    }
+
+    private boolean endsWithNewline() throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 1);
+            return last.get(0) == '\n';
+        }
+    }
+
+    private void removeLive(String key) {
+        if (multiRow) {
+            Integer count = rowCounts.remove(key);
+            if (count != null) liveRows -= count;
+        } else if (latest.remove(key) != null) {
+            liveRows--;
+        }
+    }
+
+    /**
+     * Forget the in-memory index after the file was rewritten by someone else
+     */
+    public void invalidate() {
+        latest.clear();
+        rowCounts.clear();
+        pending.setLength(0);
+        totalRows = 0;
+        liveRows = 0;
+        loaded = false;
+    }
+
+    /**
+     * Forget the index if another process appended to the file or replaced it since this one
+     * last read or wrote it
+     */
+    public void reloadIfChanged() throws IOException {
+        if (!loaded) return;
+        Object fileKey = knownFileKey;
+        long size = knownSize;
+        rememberState();
+        if (size != knownSize || !Objects.equals(fileKey, knownFileKey)) {
+            invalidate();
+        }
+    }
+
+    public boolean contains(String key) throws IOException {
+        ensureLoaded();
+        return multiRow ? rowCounts.containsKey(key) : latest.containsKey(key);
+    }
+
+    /**
+     * Live record for a key in a single-row file, or null
+     */
+    public String get(String key) throws IOException {
+        ensureLoaded();
+        return latest.get(key);
+    }
+
+    /**
+     * Live records of a single-row file, in first-written order
+     */
+    public Collection<String> liveRecords() throws IOException {
+        ensureLoaded();
+        return Collections.unmodifiableCollection(latest.values());
+    }
+
+    // ---------------- APPENDS ----------------
+
+    /**
+     * Queue a record; it reaches the file on the next flush()
+     */
+    public void append(String key, String record) throws IOException {
+        ensureLoaded();
+        if (multiRow) {
+            rowCounts.merge(key, 1, Integer::sum);
+            liveRows++;
+        } else if (latest.put(key, record) == null) {
+            liveRows++;
+        }
+        totalRows++;
+        pending.append(record).append('\n');
+    }
+
+    /**
+     * Queue a tombstone for a live key. Returns false if the key is not live.
+     */
+    public boolean delete(String key, String timestamp) throws IOException {
+        ensureLoaded();
+        if (!contains(key)) return false;
+        removeLive(key);
+        totalRows++;
+        pending.append(tombstone(key, timestamp)).append('\n');
+        return true;
+    }
+
+    /**
+     * Append every queued record with one write and force it to disk
+     */
+    public void flush() throws IOException {
+        if (pending.length() == 0) return;
+
+        String text = (needsNewline ? "\n" : "") + pending;
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(false);
+        }
+        pending.setLength(0);
+        needsNewline = false;
+        rememberState();
+    }
+
+    // ---------------- COMPACTION ----------------
+
+    public double getGarbageRatio() throws IOException {
+        ensureLoaded();
+        return totalRows == 0 ? 0 : (double) (totalRows - liveRows) / totalRows;
+    }
+
+    public long getGarbageRows() throws IOException {
+        ensureLoaded();
+        return totalRows - liveRows;
+    }
+
+    /**
+     * Rewrite the file with only its live records. The new file is moved into place in one step.
+     */
+    public void compact() throws IOException {
+        ensureLoaded();
+        flush();
+
+        List<String> records = new ArrayList<>();
+        if (multiRow) {
+            // Replay the file: rows before a key's tombstone are dead
+            Map<String, List<String>> byKey = new LinkedHashMap<>();
+            RecordTokenizer rows = RecordTokenizer.open(path);
+            while (rows.next()) {
+                if (isTombstone(rows)) {
+                    byKey.remove(rows.field(0));
+                } else {
+                    byKey.computeIfAbsent(rows.field(0), key -> new ArrayList<>()).add(rows.line());
+                }
+            }
+            for (List<String> keyRows : byKey.values()) {
+                records.addAll(keyRows);
+            }
+        } else {
+            records.addAll(latest.values());
+        }
+
+        long before = totalRows;
+        Path temp = Paths.get(path + ".tmp");
+        Files.write(temp, records, StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        totalRows = records.size();
+        liveRows = records.size();
+        needsNewline = false;
+        rememberState();
+        System.out.println("Compacted " + getName() + ": " + before + " -> " + totalRows + " records");
+    }
+}
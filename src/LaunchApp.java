@@ -1,7 +1,11 @@
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
 public class LaunchApp extends Application {
@@ -11,31 +15,19 @@ public class LaunchApp extends Application {
         try {
             System.out.println("=== BANKING SYSTEM STARTING ===");
 
-            // Initialize file system first
-            System.out.println("Initializing file system...");
-            FileManager.initializeFiles();
-
-            // Check if file system is ready
-            if (isFileSystemReady()) {
-                System.out.println("File system is ready, loading application...");
-
-                // Load and display the login screen
-                Parent root = FXMLLoader.load(getClass().getResource("/LoginScreen.fxml"));
-                Scene scene = new Scene(root);
+            // Show a splash screen while the data files are loaded off the JavaFX thread
+            Label statusLabel = new Label("Initializing file system...");
+            ProgressBar progressBar = new ProgressBar(0);
+            VBox splash = new VBox(12, new Label("Banking System"), progressBar, statusLabel);
+            splash.setStyle("-fx-padding: 40px; -fx-alignment: center;");
 
-                primaryStage.setTitle("Banking System");
-                primaryStage.setScene(scene);
-                // REMOVED: primaryStage.setResizable(false); - Now the window is resizable
-                primaryStage.setMinWidth(800);  // Set minimum window size
-                primaryStage.setMinHeight(600);
-
-                primaryStage.show();
+            primaryStage.setTitle("Banking System");
+            primaryStage.setScene(new Scene(splash, 400, 200));
+            primaryStage.show();
 
-                System.out.println("=== BANKING SYSTEM STARTED SUCCESSFULLY ===");
-            } else {
-                showErrorScreen(primaryStage, "File System Error",
-                        "Cannot initialize file system. Please check file permissions and try again.");
-            }
+            Thread loader = new Thread(() -> loadData(primaryStage, statusLabel, progressBar), "startup-loader");
+            loader.setDaemon(true);
+            loader.start();
 
         } catch (Exception e) {
             System.out.println("Fatal error during application startup: " + e.getMessage());
@@ -45,22 +37,47 @@ public class LaunchApp extends Application {
         }
     }
 
-    private boolean isFileSystemReady() {
+    /**
+     * Initialize the file system and load every store, then switch to the login screen
+     */
+    private void loadData(Stage primaryStage, Label statusLabel, ProgressBar progressBar) {
         try {
-            // Check if we can create/access the necessary files
-            FileManager.initializeFiles();
+            System.out.println("Initializing file system...");
+            BankStores.open();
 
-            // Try to load customers (this will create the file if it doesn't exist)
-            FileManager.loadAllCustomers();
+            Main.loadAllData((message, fraction) -> Platform.runLater(() -> {
+                statusLabel.setText(message);
+                progressBar.setProgress(fraction);
+            }));
 
-            // Try to load accounts
-            FileManager.loadAllAccounts(FileManager.loadAllCustomers());
+            System.out.println("File system is ready, loading application...");
+            Platform.runLater(() -> showLoginScreen(primaryStage));
 
-            System.out.println("File system initialized successfully");
-            return true;
         } catch (Exception e) {
             System.out.println("File system readiness check failed: " + e.getMessage());
-            return false;
+            e.printStackTrace();
+            Platform.runLater(() -> showErrorScreen(primaryStage, "File System Error",
+                    "Cannot initialize file system. Please check file permissions and try again."));
+        }
+    }
+
+    private void showLoginScreen(Stage primaryStage) {
+        try {
+            // Load and display the login screen
+            Parent root = FXMLLoader.load(getClass().getResource("/LoginScreen.fxml"));
+            Scene scene = new Scene(root);
+
+            primaryStage.setScene(scene);
+            // REMOVED: primaryStage.setResizable(false); - Now the window is resizable
+            primaryStage.setMinWidth(800);  // Set minimum window size
+            primaryStage.setMinHeight(600);
+
+            System.out.println("=== BANKING SYSTEM STARTED SUCCESSFULLY ===");
+        } catch (Exception e) {
+            System.out.println("Fatal error during application startup: " + e.getMessage());
+            e.printStackTrace();
+            showErrorScreen(primaryStage, "Startup Error",
+                    "Failed to start the application: " + e.getMessage());
         }
     }
 
@@ -88,7 +105,12 @@ public class LaunchApp extends Application {
         // Add shutdown hook for cleanup if needed
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("Shutting down application...");
-            // Add any file cleanup here if needed
+            // Let pending operations finish, then fold the write-ahead log into the data files,
+            // snapshot them and release them
+            BankService.shutdown();
+            LedgerPipeline.shutdown();
+            BankStores.get().close(true);
+            System.out.println(RetryScheduler.report());
         }));
 
         try {
@@ -0,0 +1,28 @@
+/**
+ * What a stored transaction row records. Rows are the ledger's events: each carries its account's
+ * next sequence number, and an account's balance is the sum of its events replayed in sequence
+ * order. ACCOUNT_OPENED holds the opening balance, zero for a new account or the balance brought
+ * forward from an account stored before events were numbered.
+ */
+public enum LedgerEvent {
+    ACCOUNT_OPENED,
+    DEPOSITED,
+    WITHDRAWN,
+    TRANSFER_POSTED,
+    INTEREST_PAID;
+
+    /**
+     * The event stored in a row, or the one implied by the transaction type for rows written
+     * before events were recorded
+     */
+    public static LedgerEvent parse(String name, String type) {
+        if (name != null && !name.isEmpty()) {
+            try {
+                return valueOf(name);
+            } catch (IllegalArgumentException e) {
+                // Fall back to the type
+            }
+        }
+        return "WITHDRAWAL".equalsIgnoreCase(type) ? WITHDRAWN : DEPOSITED;
+    }
+}
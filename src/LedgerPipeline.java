@@ -0,0 +1,676 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Sharded single-writer pipeline for deposits, withdrawals, transfers and interest payments,
+ * including batch postings and the initial deposit of a new account.
+ *
+ * Accounts are partitioned by a hash of the account number into shards, one per processor by
+ * default. Each shard owns a ring of commands, an applier thread and a journal thread: producers
+ * claim a sequence number in the shard of the account, fill the ring slot it maps to and publish
+ * it. The ring and its command slots are allocated once and reused, so publishing allocates
+ * nothing. The applier applies published commands to the shard's accounts in sequence order,
+ * taking no locks; the journal then stores everything applied so far as one batch through
+ * BankStore.savePostings, which the file engine writes as a single log record. A command is done
+ * when its batch is stored: post() waits for that, publish() does not. The journal reuses its
+ * per-account row lists between batches, but still creates each history row, which the account
+ * keeps, and the store encodes the batch as text.
+ *
+ * The shards do not have journals of their own on disk. Every journal thread stores its batches
+ * through the same BankStore, and the file engine writes them to its one write-ahead log, one
+ * forced write at a time. Applying commands scales with the shards; storing them does not, so
+ * posting throughput is bounded by that log, not by the number of cores.
+ *
+ * A transfer between accounts of one shard is a single command. A transfer between shards runs in
+ * two phases: the source shard reserves the amount by debiting it, then the target shard credits
+ * it and stores both legs as one batch. If the commit cannot be stored the source shard releases
+ * the reservation, so after a crash either both legs are in the store or neither is.
+ *
+ * Producers never overtake a shard's journal by more than the ring size. If a batch cannot be
+ * stored, its commands are taken back out of the balances and reported as FAILED. The applier may
+ * have run ahead of the journal, so it first takes back every command applied after the batch as
+ * well, newest first, and applies those again against the balances without the failed batch.
+ */
+public final class LedgerPipeline {
+    private static final int RING_SIZE = Integer.highestOneBit(Math.max(2, Integer.getInteger("bank.pipeline.ringSize", 16384)));
+    private static final int MAX_BATCH = Integer.getInteger("bank.pipeline.journalBatch", 4096);
+    public static final int SHARDS = Math.max(1, Integer.getInteger("bank.pipeline.shards",
+            Runtime.getRuntime().availableProcessors()));
+    private static final long IDLE_PARK_NANOS = 100_000;
+    private static final int IDLE_SPINS = 64;
+
+    public enum Kind {
+        DEPOSIT,
+        WITHDRAWAL,
+        TRANSFER,
+        INTEREST,
+        TRANSFER_RESERVE, // debit the source of a transfer between shards; stores nothing
+        TRANSFER_COMMIT,  // credit the target and store both legs
+        TRANSFER_RELEASE  // give back a reservation whose commit was not stored; stores nothing
+    }
+
+    /**
+     * Told the outcome of a command once its batch has been stored. Runs on the journal thread.
+     */
+    public interface Listener {
+        void journaled(Posting.Outcome outcome);
+    }
+
+    // One ring slot, refilled for every sequence number that maps to it
+    private static final class Command {
+        Kind kind;
+        Account account;
+        Account counterparty; // credited account of a transfer
+        long amount;          // thebe; set by the applier for interest
+        String description;
+        Listener listener;
+        Posting.Outcome outcome;
+        long balance;             // account balance after the command; the reserved balance for a commit
+        long counterpartyBalance;
+        Transaction row;          // history rows built by the journal
+        Transaction counterpartyRow;
+    }
+
+    // Parked in post() until the journal thread reports its command
+    private static final class Waiter implements Listener {
+        private final Thread thread = Thread.currentThread();
+        private volatile Posting.Outcome outcome;
+        private long balance; // account balance after the command, written before the outcome
+
+        @Override
+        public void journaled(Posting.Outcome outcome) {
+            this.outcome = outcome;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private static final Shard[] shards = new Shard[SHARDS];
+    private static volatile boolean running = true;
+    private static final AtomicInteger crossing = new AtomicInteger(); // transfers between their two phases
+    private static final ThreadLocal<Waiter> waiters = ThreadLocal.withInitial(Waiter::new);
+
+    static {
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new Shard(i);
+        }
+    }
+
+    private LedgerPipeline() {
+    }
+
+    /**
+     * The shard that owns the account
+     */
+    static int shardOf(Account account) {
+        int hash = account.getAccountNumber().hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), SHARDS);
+    }
+
+    // ---------------- PRODUCERS ----------------
+
+    /**
+     * Deposit an amount in pula and wait until it is stored
+     */
+    public static Posting.Outcome deposit(Account account, double amount, String description) {
+        return post(Kind.DEPOSIT, account, null, amount > 0 ? Money.ofPula(amount) : 0, description);
+    }
+
+    /**
+     * Withdraw an amount in pula and wait until it is stored
+     */
+    public static Posting.Outcome withdraw(Account account, double amount, String description) {
+        return post(Kind.WITHDRAWAL, account, null, amount > 0 ? Money.ofPula(amount) : 0, description);
+    }
+
+    /**
+     * Transfer an amount in pula after the checks of TransferEngine.check, and wait until both legs
+     * are stored. An empty description gives each leg the usual "Transfer to"/"Transfer from" text.
+     */
+    public static TransferEngine.Outcome transfer(Account fromAccount, Account toAccount, double amount,
+                                                  String description) {
+        long thebe = amount > 0 ? Money.ofPula(amount) : 0;
+        TransferEngine.Outcome refused = TransferEngine.check(fromAccount, toAccount, thebe);
+        if (refused != null) {
+            return refused;
+        }
+        switch (post(Kind.TRANSFER, fromAccount, toAccount, thebe, description)) {
+            case POSTED:
+                return TransferEngine.Outcome.COMPLETED;
+            case INSUFFICIENT_FUNDS:
+                return TransferEngine.Outcome.INSUFFICIENT_FUNDS;
+            default:
+                return TransferEngine.Outcome.FAILED;
+        }
+    }
+
+    /**
+     * Publish deposits and withdrawals in list order and wait until all of them are stored.
+     * Accounts are looked up by number; a missing account gives ACCOUNT_NOT_FOUND.
+     */
+    public static List<Posting.Outcome> postAll(List<Posting> postings, Function<String, Account> accounts) {
+        Posting.Outcome[] outcomes = new Posting.Outcome[postings.size()];
+        AtomicInteger pending = new AtomicInteger(postings.size());
+        Thread caller = Thread.currentThread();
+        for (int i = 0; i < postings.size(); i++) {
+            Posting posting = postings.get(i);
+            int index = i;
+            Listener listener = outcome -> {
+                outcomes[index] = outcome;
+                if (pending.decrementAndGet() == 0) {
+                    LockSupport.unpark(caller);
+                }
+            };
+            Kind kind = posting.getType() == Posting.Type.DEPOSIT ? Kind.DEPOSIT : Kind.WITHDRAWAL;
+            if (publish(kind, accounts.apply(posting.getAccountNumber()), null, posting.getAmountThebe(),
+                    posting.getDescription(), listener) < 0) {
+                listener.journaled(Posting.Outcome.FAILED);
+            }
+        }
+        while (pending.get() > 0) {
+            LockSupport.park(outcomes);
+        }
+        return Arrays.asList(outcomes);
+    }
+
+    /**
+     * Pay the interest due on the account's balance when the command is applied, without waiting
+     */
+    public static void payInterest(Account account) {
+        publish(Kind.INTEREST, account, null, 0, null, null);
+    }
+
+    /**
+     * Publish a command and wait until its batch is stored
+     */
+    public static Posting.Outcome post(Kind kind, Account account, Account counterparty, long amount,
+                                       String description) {
+        if (kind == Kind.TRANSFER && crossesShards(account, counterparty)) {
+            return transferAcrossShards(account, counterparty, amount, description);
+        }
+        return await(kind, account, counterparty, amount, 0, description);
+    }
+
+    /**
+     * Publish a command and return its sequence number in its shard at once, or -1 once the
+     * pipeline is shut down. The listener, if any, is told the outcome when the command is stored.
+     * A transfer between shards returns 0 after waiting for its reserve and commit phases.
+     */
+    public static long publish(Kind kind, Account account, Account counterparty, long amount,
+                               String description, Listener listener) {
+        if (kind == Kind.TRANSFER && crossesShards(account, counterparty)) {
+            Posting.Outcome outcome = transferAcrossShards(account, counterparty, amount, description);
+            if (listener != null) {
+                listener.journaled(outcome);
+            }
+            return 0;
+        }
+        return publish(kind, account, counterparty, amount, 0, description, listener);
+    }
+
+    private static long publish(Kind kind, Account account, Account counterparty, long amount, long balance,
+                                String description, Listener listener) {
+        // A commit runs in the target's shard; commands without an account are refused by any shard
+        Account owner = kind == Kind.TRANSFER_COMMIT ? counterparty : account;
+        Shard shard = shards[owner != null ? shardOf(owner) : 0];
+        return shard.publish(kind, account, counterparty, amount, balance, description, listener);
+    }
+
+    // Publish with the calling thread's waiter and park until the journal reports the outcome
+    private static Posting.Outcome await(Kind kind, Account account, Account counterparty, long amount,
+                                        long balance, String description) {
+        Waiter waiter = waiters.get();
+        waiter.outcome = null;
+        if (publish(kind, account, counterparty, amount, balance, description, waiter) < 0) {
+            return Posting.Outcome.FAILED;
+        }
+        Posting.Outcome outcome;
+        while ((outcome = waiter.outcome) == null) {
+            LockSupport.park(waiter);
+        }
+        return outcome;
+    }
+
+    private static boolean crossesShards(Account account, Account counterparty) {
+        return account != null && counterparty != null && shardOf(account) != shardOf(counterparty);
+    }
+
+    // Reserve in the source shard, commit in the target shard, release the reservation if the commit fails.
+    // Shards being shut down keep running until no transfer is between its phases.
+    private static Posting.Outcome transferAcrossShards(Account fromAccount, Account toAccount, long amount,
+                                                        String description) {
+        crossing.incrementAndGet();
+        try {
+            Posting.Outcome reserved = await(Kind.TRANSFER_RESERVE, fromAccount, toAccount, amount, 0, description);
+            if (reserved != Posting.Outcome.POSTED) {
+                return reserved;
+            }
+            Posting.Outcome committed = await(Kind.TRANSFER_COMMIT, fromAccount, toAccount, amount,
+                    waiters.get().balance, description);
+            if (committed != Posting.Outcome.POSTED) {
+                shards[shardOf(fromAccount)].publish(Kind.TRANSFER_RELEASE, fromAccount, toAccount, amount, 0,
+                        description, null);
+                return Posting.Outcome.FAILED;
+            }
+            return committed;
+        } finally {
+            crossing.decrementAndGet();
+        }
+    }
+
+    /**
+     * Wait until every command published before this call is stored
+     */
+    public static void flush() {
+        for (Shard shard : shards) {
+            shard.flush();
+        }
+    }
+
+    // ---------------- SHARDS ----------------
+
+    // One partition of the accounts with its own ring, applier and journal
+    private static final class Shard {
+        // Added to claimed when the shard is closed, so closing and claiming are one atomic value
+        private static final long CLOSED = 1L << 62;
+
+        private final Command[] ring = new Command[RING_SIZE];
+        private final AtomicLongArray published = new AtomicLongArray(RING_SIZE);
+        private final AtomicLong claimed = new AtomicLong(-1);
+        private volatile long applied = -1;
+        private volatile long journaled = -1;
+        private volatile long rewindFrom = -1; // first command of a batch that could not be stored, or -1
+        private long rewindTo;                 // its last command, written before rewindFrom
+        private final Thread applier;
+        private final Thread journal;
+
+        private long batches = 0;
+        private long commands = 0;
+
+        Shard(int index) {
+            for (int i = 0; i < RING_SIZE; i++) {
+                ring[i] = new Command();
+                published.set(i, -1);
+            }
+            applier = new Thread(this::runApplier, "ledger-applier-" + index);
+            applier.setDaemon(true);
+            applier.start();
+            journal = new Thread(this::runJournal, "ledger-journal-" + index);
+            journal.setDaemon(true);
+            journal.start();
+        }
+
+        long publish(Kind kind, Account account, Account counterparty, long amount, long balance,
+                     String description, Listener listener) {
+            long sequence = claim(kind == Kind.TRANSFER_COMMIT || kind == Kind.TRANSFER_RELEASE);
+            if (sequence < 0) {
+                return -1;
+            }
+            // The slot is free once the journal has finished with the command a ring earlier
+            for (int idle = 0; sequence - RING_SIZE > journaled; idle++) {
+                idle(idle);
+            }
+            Command command = ring[(int) (sequence & (RING_SIZE - 1))];
+            command.kind = kind;
+            command.account = account;
+            command.counterparty = counterparty;
+            command.amount = amount;
+            command.balance = balance;
+            command.description = description;
+            command.listener = listener;
+            published.set((int) (sequence & (RING_SIZE - 1)), sequence);
+            LockSupport.unpark(applier);
+            return sequence;
+        }
+
+        /**
+         * Claim the next sequence number, or return -1 if the shard is closed. The second phase of a
+         * transfer already under way is let through a closed shard, which runs until it is stored.
+         */
+        private long claim(boolean secondPhase) {
+            while (true) {
+                long current = claimed.get();
+                if (current >= CLOSED - 1 && !secondPhase) {
+                    return -1;
+                }
+                if (claimed.compareAndSet(current, current + 1)) {
+                    return current >= CLOSED - 1 ? current + 1 - CLOSED : current + 1;
+                }
+            }
+        }
+
+        // Stop taking new commands; those claimed already are still applied and stored
+        void close() {
+            claimed.getAndUpdate(current -> current >= CLOSED - 1 ? current : current + CLOSED);
+        }
+
+        private long lastClaimed() {
+            long current = claimed.get();
+            return current >= CLOSED - 1 ? current - CLOSED : current;
+        }
+
+        // True once the shard is closed and every command claimed before has reached the given stage
+        private boolean drained(long next) {
+            // Read crossing first: a transfer claims its last phase before it stops counting
+            if (crossing.get() > 0) {
+                return false;
+            }
+            long current = claimed.get();
+            return current >= CLOSED - 1 && next > current - CLOSED;
+        }
+
+        void flush() {
+            long target = lastClaimed();
+            for (int idle = 0; journaled < target && journal.isAlive(); idle++) {
+                idle(idle);
+            }
+        }
+
+        private void runApplier() {
+            long next = 0;
+            int idle = 0;
+            // Runs until the journal is done, which may still need a rewind
+            while (!drained(journaled + 1)) {
+                if (rewindFrom >= 0) {
+                    next = rewind(next);
+                    idle = 0;
+                    continue;
+                }
+                while (rewindFrom < 0 && published.get((int) (next & (RING_SIZE - 1))) == next) {
+                    apply(ring[(int) (next & (RING_SIZE - 1))]);
+                    next++;
+                }
+                if (next - 1 > applied) {
+                    applied = next - 1;
+                    LockSupport.unpark(journal);
+                    idle = 0;
+                } else {
+                    idle(idle++);
+                }
+            }
+        }
+
+        /**
+         * On the applier thread: take back every command applied from the failed batch on, newest
+         * first. The batch's stored commands become FAILED; its reservations and releases, which
+         * store nothing, are applied again. Returns the next command to apply, the one after the batch.
+         */
+        private long rewind(long next) {
+            long first = rewindFrom;
+            long last = rewindTo;
+            for (long sequence = next - 1; sequence >= first; sequence--) {
+                Command command = ring[(int) (sequence & (RING_SIZE - 1))];
+                if (command.outcome == Posting.Outcome.POSTED) {
+                    undo(command);
+                }
+            }
+            for (long sequence = first; sequence <= last; sequence++) {
+                Command command = ring[(int) (sequence & (RING_SIZE - 1))];
+                if (!isStored(command.kind)) {
+                    apply(command);
+                } else if (command.outcome == Posting.Outcome.POSTED) {
+                    command.outcome = Posting.Outcome.FAILED;
+                }
+            }
+            applied = last;
+            rewindFrom = -1;
+            return last + 1;
+        }
+
+        // On the journal thread: have the applier rewind a batch that could not be stored, and wait
+        private void requestRewind(long first, long last) {
+            rewindTo = last;
+            rewindFrom = first;
+            LockSupport.unpark(applier);
+            for (int idle = 0; rewindFrom >= 0; idle++) {
+                idle(idle);
+            }
+        }
+
+        private void runJournal() {
+            Map<String, List<Transaction>> rows = new HashMap<>();
+            Map<String, List<Transaction>> rowLists = new HashMap<>(); // one per account, reused by every batch
+            long next = 0;
+            int idle = 0;
+            while (!drained(next)) {
+                long available = applied;
+                if (available < next) {
+                    idle(idle++);
+                    continue;
+                }
+                idle = 0;
+                long last = Math.min(available, next + MAX_BATCH - 1);
+                journalBatch(next, last, rows, rowLists);
+                journaled = last;
+                next = last + 1;
+            }
+        }
+
+        private void journalBatch(long first, long last, Map<String, List<Transaction>> rows,
+                                  Map<String, List<Transaction>> rowLists) {
+            rows.clear();
+            String date = LocalDate.now().toString();
+            for (long sequence = first; sequence <= last; sequence++) {
+                Command command = ring[(int) (sequence & (RING_SIZE - 1))];
+                if (command.outcome != Posting.Outcome.POSTED || !isStored(command.kind)) {
+                    continue;
+                }
+                String accountNumber = command.account.getAccountNumber();
+                command.row = debitOrCredit(command, date);
+                rowsOf(accountNumber, rows, rowLists).add(command.row);
+                if (isTransfer(command.kind)) {
+                    String toAccountNumber = command.counterparty.getAccountNumber();
+                    command.counterpartyRow = command.counterparty.newEvent(LedgerEvent.TRANSFER_POSTED, date,
+                            blank(command.description) ? "Transfer from " + accountNumber : command.description,
+                            command.amount, "DEPOSIT", command.counterpartyBalance);
+                    rowsOf(toAccountNumber, rows, rowLists).add(command.counterpartyRow);
+                }
+            }
+
+            boolean stored = rows.isEmpty();
+            if (!stored) {
+                try {
+                    stored = BankStores.get().savePostings(rows);
+                } catch (RuntimeException e) {
+                    System.out.println("Ledger journal error: " + e.getMessage());
+                }
+            }
+
+            if (!stored) {
+                requestRewind(first, last);
+            }
+
+            for (long sequence = first; sequence <= last; sequence++) {
+                Command command = ring[(int) (sequence & (RING_SIZE - 1))];
+                if (stored && command.outcome == Posting.Outcome.POSTED && isStored(command.kind)) {
+                    command.account.addTransaction(command.row);
+                    if (isTransfer(command.kind)) {
+                        command.counterparty.addTransaction(command.counterpartyRow);
+                    }
+                }
+                if (command.listener instanceof Waiter) {
+                    ((Waiter) command.listener).balance = command.balance;
+                }
+                if (command.listener != null) {
+                    command.listener.journaled(command.outcome);
+                }
+            }
+            if (!stored) {
+                System.out.println("Ledger journal failed: " + (last - first + 1) + " commands not saved");
+            }
+            batches++;
+            commands += last - first + 1;
+        }
+
+        // The account's list in this batch, emptied from the previous batch the first time it is used
+        private List<Transaction> rowsOf(String accountNumber, Map<String, List<Transaction>> rows,
+                                         Map<String, List<Transaction>> rowLists) {
+            List<Transaction> accountRows = rows.get(accountNumber);
+            if (accountRows == null) {
+                accountRows = rowLists.computeIfAbsent(accountNumber, key -> new ArrayList<>());
+                accountRows.clear();
+                rows.put(accountNumber, accountRows);
+            }
+            return accountRows;
+        }
+    }
+
+    // ---------------- COMMANDS ----------------
+
+    private static void apply(Command command) {
+        Account account = command.account;
+        if (command.kind != Kind.TRANSFER_COMMIT) {
+            command.balance = 0;
+        }
+        if (account == null || (hasCounterparty(command.kind) && command.counterparty == null)) {
+            command.outcome = Posting.Outcome.ACCOUNT_NOT_FOUND;
+            return;
+        }
+        if (command.kind == Kind.INTEREST) {
+            command.amount = account instanceof InterestBearing
+                    ? ((InterestBearing) account).interestOn(account.getBalanceThebe())
+                    : 0;
+        }
+        if (command.amount <= 0) {
+            command.outcome = Posting.Outcome.INVALID_AMOUNT;
+            return;
+        }
+        switch (command.kind) {
+            case DEPOSIT:
+            case INTEREST:
+            case TRANSFER_RELEASE:
+                command.balance = account.addToBalance(command.amount);
+                break;
+            case TRANSFER_COMMIT:
+                command.counterpartyBalance = command.counterparty.addToBalance(command.amount);
+                break;
+            default:
+                command.balance = account.tryDebit(command.amount);
+                if (command.balance == Account.REFUSED) {
+                    command.outcome = Posting.Outcome.INSUFFICIENT_FUNDS;
+                    return;
+                }
+                if (command.kind == Kind.TRANSFER) {
+                    command.counterpartyBalance = command.counterparty.addToBalance(command.amount);
+                }
+                break;
+        }
+        command.outcome = Posting.Outcome.POSTED;
+    }
+
+    private static Transaction debitOrCredit(Command command, String date) {
+        switch (command.kind) {
+            case DEPOSIT:
+                return command.account.newEvent(LedgerEvent.DEPOSITED, date,
+                        blank(command.description) ? "Deposit" : command.description,
+                        command.amount, "DEPOSIT", command.balance);
+            case INTEREST:
+                return command.account.newEvent(LedgerEvent.INTEREST_PAID, date,
+                        ((InterestBearing) command.account).getInterestDescription(),
+                        command.amount, "DEPOSIT", command.balance);
+            case TRANSFER:
+            case TRANSFER_COMMIT:
+                return command.account.newEvent(LedgerEvent.TRANSFER_POSTED, date, blank(command.description)
+                                ? "Transfer to " + command.counterparty.getAccountNumber() : command.description,
+                        command.amount, "WITHDRAWAL", command.balance);
+            default:
+                return command.account.newEvent(LedgerEvent.WITHDRAWN, date,
+                        blank(command.description) ? "Withdrawal" : command.description,
+                        command.amount, "WITHDRAWAL", command.balance);
+        }
+    }
+
+    // Take an applied command back out of the balances
+    private static void undo(Command command) {
+        switch (command.kind) {
+            case DEPOSIT:
+            case INTEREST:
+            case TRANSFER_RELEASE:
+                command.account.addToBalance(Money.negate(command.amount));
+                break;
+            case TRANSFER:
+                command.counterparty.addToBalance(Money.negate(command.amount));
+                command.account.addToBalance(command.amount);
+                break;
+            case TRANSFER_COMMIT:
+                // The source shard releases its reservation
+                command.counterparty.addToBalance(Money.negate(command.amount));
+                break;
+            default:
+                command.account.addToBalance(command.amount);
+        }
+    }
+
+    // Reserving and releasing only move a balance; the commit stores the transfer
+    private static boolean isStored(Kind kind) {
+        return kind != Kind.TRANSFER_RESERVE && kind != Kind.TRANSFER_RELEASE;
+    }
+
+    private static boolean isTransfer(Kind kind) {
+        return kind == Kind.TRANSFER || kind == Kind.TRANSFER_COMMIT;
+    }
+
+    private static boolean hasCounterparty(Kind kind) {
+        return kind == Kind.TRANSFER || kind == Kind.TRANSFER_RESERVE || kind == Kind.TRANSFER_COMMIT;
+    }
+
+    private static boolean blank(String description) {
+        return description == null || description.isEmpty();
+    }
+
+    // ---------------- WAITING ----------------
+
+    // Spin briefly, then yield, then park; producers and the applier unpark the next stage
+    private static void idle(int count) {
+        if (count < IDLE_SPINS) {
+            Thread.onSpinWait();
+        } else if (count < 2 * IDLE_SPINS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    // ---------------- SHUTDOWN ----------------
+
+    /**
+     * Store every published command and stop the pipeline threads
+     */
+    public static void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        // Commands published from now on are refused; those already claimed are stored first
+        for (Shard shard : shards) {
+            shard.close();
+        }
+        flush();
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.applier);
+            LockSupport.unpark(shard.journal);
+        }
+        long batches = 0;
+        long commands = 0;
+        try {
+            for (Shard shard : shards) {
+                shard.applier.join(1000);
+                shard.journal.join(1000);
+                batches += shard.batches;
+                commands += shard.commands;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Ledger pipeline: " + commands + " commands stored in " + batches + " batches across "
+                + SHARDS + " shards");
+    }
+}
@@ -17,6 +17,9 @@ public class LoginController {
     @FXML
     private PasswordField passwordField;
 
+    @FXML
+    private Button loginButton;
+
     @FXML
     private void initialize() {
         System.out.println("LoginController initialized!");
@@ -34,21 +37,25 @@ public class LoginController {
                 return;
             }
 
-            // Use the enhanced login method that supports both Customer ID and Email
-            Customer customer = Main.loginWithIdOrEmail(loginInput, password);
-
-            if (customer != null) {
-                showAlert("Login Successful",
-                        "Welcome back, " + customer.getFirstname() + " " + customer.getSurname() + "!\n" +
-                                "Login method: " + (loginInput.contains("@") ? "Email" : "Customer ID"));
-                loadDashboard(customer);
-            } else {
-                showAlert("Login Failed",
-                        "Invalid login credentials.\n\n" +
-                                "You can login with:\n" +
-                                "• Your Customer ID\n" +
-                                "• Your registered email address");
-            }
+            // Use the enhanced login method that supports both Customer ID and Email; it may
+            // wait between retries, so it runs on the bank service thread
+            BankService.whenDone(BankService.login(loginInput, password), (customer, error) -> {
+                if (error != null) {
+                    error.printStackTrace();
+                    showAlert("Login Error", "Error during login: " + error.getMessage());
+                } else if (customer != null) {
+                    showAlert("Login Successful",
+                            "Welcome back, " + customer.getFirstname() + " " + customer.getSurname() + "!\n" +
+                                    "Login method: " + (loginInput.contains("@") ? "Email" : "Customer ID"));
+                    loadDashboard(customer);
+                } else {
+                    showAlert("Login Failed",
+                            "Invalid login credentials.\n\n" +
+                                    "You can login with:\n" +
+                                    "• Your Customer ID\n" +
+                                    "• Your registered email address");
+                }
+            }, loginButton, customerIdField, passwordField);
         } catch (Exception e) {
             e.printStackTrace();
             showAlert("Login Error", "Error during login: " + e.getMessage());
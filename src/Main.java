@@ -3,18 +3,35 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import java.util.function.Supplier;
-import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class Main {
-    private static Map<String, Customer> customerDatabase = new HashMap<>();
-    private static Map<String, String> passwordDatabase = new HashMap<>();
+    // Concurrent: registrations can complete on the storage retry thread
+    private static Map<String, Customer> customerDatabase = new ConcurrentHashMap<>();
+    private static Map<String, String> passwordDatabase = new ConcurrentHashMap<>();
+    private static UniqueKeyRegistry uniqueKeys = new UniqueKeyRegistry();
+    private static AccountIndex accountIndex = new AccountIndex();
+
+    // Bumped each time the data files are found changed by another program; customers loaded or
+    // refreshed under an older generation are re-read from the store when they next log in
+    private static long dataGeneration = 0;
+    private static long loadedGeneration = 0;
+    private static final Map<String, Long> refreshedGeneration = new ConcurrentHashMap<>();
+
+    // How often balances changed by other processes are taken from a shared store
+    private static final long SHARED_REFRESH_MILLIS = Long.getLong("bank.shared.refreshMillis", 500);
+    private static ScheduledExecutorService sharedRefresher;
 
     public static void main(String[] args) {
         System.out.println("=== BANKING SYSTEM STARTING ===");
 
         // Initialize file system
-        FileManager.initializeFiles();
+        BankStores.open();
 
         // Load existing data from files
         loadAllDataFromFiles();
@@ -55,6 +72,7 @@ public class Main {
         Customer updatedCustomer = Customer.loadCustomer(customerID);
         if (updatedCustomer != null) {
             customerDatabase.put(customerID, updatedCustomer);
+            reindexCustomer(updatedCustomer);
             return updatedCustomer;
         }
         return null;
@@ -62,112 +80,51 @@ public class Main {
 
     // ---------------- FILE-BASED LOADING ----------------
     private static void loadAllDataFromFiles() {
-        System.out.println("Loading data from files...");
+        loadAllData((message, fraction) -> { });
+    }
 
-        // Load customers from files
-        loadCustomersFromFiles();
+    /**
+     * Load all stores concurrently into the in-memory model, reporting progress as each one finishes
+     */
+    public static void loadAllData(BulkLoader.ProgressListener listener) {
+        System.out.println("Loading data from files...");
 
-        // Load passwords from files
-        loadPasswordsFromFiles();
+        // One pass over each file; accounts and transactions are grouped by owner while loading
+        BulkLoader.Result result = BulkLoader.load(BulkLoader.STARTUP_PARALLELISM, listener);
 
-        // Load accounts for each customer
-        for (Customer customer : customerDatabase.values()) {
-            loadCustomerAccountsFromFiles(customer);
+        customerDatabase.clear();
+        customerDatabase.putAll(result.customers);
+        passwordDatabase = new ConcurrentHashMap<>(result.passwords);
+        uniqueKeys = result.uniqueKeys;
+        accountIndex = result.accountIndex;
+        openLegacyAccounts(result.unnumberedAccounts);
+        BankStores.get().markCurrent();
+        loadedGeneration = dataGeneration;
+        refreshedGeneration.clear();
+        if (BankStores.get().isShared()) {
+            // Events other processes have not made durable yet are already in the stored balances
+            refreshAllSharedBalances();
+            startSharedRefresh();
         }
 
         System.out.println("Loaded " + customerDatabase.size() + " customers from files.");
     }
 
-    private static void loadCustomersFromFiles() {
-        Map<String, Customer> loadedCustomers = FileManager.loadAllCustomers();
-        customerDatabase.putAll(loadedCustomers);
-        System.out.println("Loaded " + loadedCustomers.size() + " customers from files.");
-    }
-
-    private static void loadPasswordsFromFiles() {
-        passwordDatabase = FileManager.loadAllPasswords();
-        System.out.println("Loaded " + passwordDatabase.size() + " passwords from files.");
-    }
-
     /**
-     * Load accounts for a customer from file data
+     * Give accounts stored before ledger events were numbered an opening event carrying their
+     * stored balance, so from then on their balance is rebuilt from events alone
      */
-    private static void loadCustomerAccountsFromFiles(Customer customer) {
-        try {
-            // Clear existing accounts
-            customer.getAccounts().clear();
-
-            // Load all account data from files
-            List<FileManager.AccountData> allAccountData = FileManager.loadAllAccounts(FileManager.loadAllCustomers());
-
-            int accountCount = 0;
-            for (FileManager.AccountData data : allAccountData) {
-                if (data.customerID.equals(customer.getCustomerID())) {
-                    Account account = createAccountFromFileData(data, customer);
-                    if (account != null) {
-                        customer.addAccount(account);
-                        // Load transactions for this account
-                        account.loadTransactions();
-                        accountCount++;
-                        System.out.println("Loaded account: " + data.accountNumber + " (" + data.accountType + ")");
-                    }
-                }
-            }
-            System.out.println("Loaded " + accountCount + " accounts for customer: " + customer.getCustomerID());
-
-        } catch (Exception e) {
-            System.err.println("Error loading accounts for customer " + customer.getCustomerID() + ": " + e.getMessage());
-            e.printStackTrace();
+    private static void openLegacyAccounts(List<Account> accounts) {
+        if (accounts.isEmpty()) {
+            return;
         }
-    }
-
-    /**
-     * Create Account object from file data
-     */
-    private static Account createAccountFromFileData(FileManager.AccountData data, Customer customer) {
-        try {
-            switch (data.accountType.toUpperCase()) {
-                case "SAVINGS":
-                    double savingsRate = 2.5; // default
-                    try {
-                        savingsRate = Double.parseDouble(data.extraData);
-                    } catch (NumberFormatException e) {
-                        System.out.println("Using default interest rate for savings account");
-                    }
-                    SavingsAccount savingsAccount = new SavingsAccount(data.accountNumber, customer, data.balance, savingsRate);
-                    savingsAccount.setBranch(data.branch);
-                    return savingsAccount;
-
-                case "CHEQUE":
-                    String[] employerParts = data.extraData.split(";");
-                    String employerName = employerParts.length > 0 ? employerParts[0] : "";
-                    String employerAddress = employerParts.length > 1 ? employerParts[1] : "";
-                    ChequeAccount chequeAccount = new ChequeAccount(data.accountNumber, customer, data.balance, 500.0);
-                    chequeAccount.setEmployerName(employerName);
-                    chequeAccount.setEmployerAddress(employerAddress);
-                    chequeAccount.setBranch(data.branch);
-                    return chequeAccount;
-
-                case "INVESTMENT":
-                    double investmentRate = 5.0; // default
-                    try {
-                        investmentRate = Double.parseDouble(data.extraData);
-                    } catch (NumberFormatException e) {
-                        System.out.println("Using default interest rate for investment account");
-                    }
-                    // FIXED: Added branch parameter to Investment constructor
-                    Investment investmentAccount = new Investment(data.accountNumber, data.branch, customer, data.balance, investmentRate);
-                    return investmentAccount;
-
-                default:
-                    System.out.println("Unknown account type: " + data.accountType);
-                    return null;
-            }
-        } catch (Exception e) {
-            System.err.println("Error creating account from data: " + e.getMessage());
-            e.printStackTrace();
-            return null;
+        List<CompletableFuture<Void>> stores = new ArrayList<>(accounts.size());
+        for (Account account : accounts) {
+            Transaction opening = account.openingEvent(account.getBalanceThebe(), "Balance brought forward");
+            stores.add(BankStores.get().saveTransactionAsync(opening, account.getAccountNumber()));
         }
+        CompletableFuture.allOf(stores.toArray(new CompletableFuture<?>[0])).join();
+        System.out.println("Recorded opening balances for " + accounts.size() + " accounts without ledger events");
     }
 
     // ---------------- DATA RESET METHOD ----------------
@@ -175,25 +132,14 @@ public class Main {
         System.out.println("=== RESETTING ALL DATA ===");
 
         try {
-            // Delete all data files
-            String[] files = {
-                    "customers.txt", "accounts.txt", "transactions.txt", "passwords.txt",
-                    "accounts_temp.txt" // Also delete any temp files
-            };
-
-            for (String filename : files) {
-                File file = new File(filename);
-                if (file.exists() && file.delete()) {
-                    System.out.println("Deleted: " + filename);
-                }
-            }
+            // Delete every stored record and reopen the engine empty
+            BankStores.get().reset();
 
             // Clear in-memory data
             customerDatabase.clear();
             passwordDatabase.clear();
-
-            // Reinitialize empty files
-            FileManager.initializeFiles();
+            uniqueKeys.clear();
+            accountIndex.clear();
 
             System.out.println("Data reset successfully! All records deleted.");
 
@@ -209,127 +155,90 @@ public class Main {
         System.out.println("Cleanup for file-based system would require file rewriting");
 
         // Remove from memory
-        customerDatabase.remove(customerId);
+        Customer customer = customerDatabase.remove(customerId);
+        if (customer != null) {
+            accountIndex.removeCustomer(customer);
+        }
+        uniqueKeys.unregister(customerId);
     }
 
     // ---------------- RETRY METHODS FOR FILE OPERATIONS ----------------
-    private static boolean customerExistsWithRetry(String customerID) {
-        return executeWithRetry(() -> customerExists(customerID), 3);
-    }
-
-    private static boolean isEmailAlreadyRegisteredWithRetry(String email) {
-        return executeWithRetry(() -> {
-            Customer customer = findCustomerByEmail(email);
-            return customer != null;
-        }, 3);
-    }
-
-    private static boolean saveCustomerWithRetry(Customer customer, String password) {
-        return executeWithRetry(() -> {
-            customer.saveCustomer();
-
-            // Save password directly using FileManager
-            String hashedPassword = hashPassword(password);
-            FileManager.savePassword(customer.getCustomerID(), hashedPassword);
-
-            return true;
-        }, 3);
-    }
-
-    private static Customer loadCustomerWithRetry(String customerId) {
-        return executeWithRetryObject(() -> Customer.loadCustomer(customerId), 3);
+    // Retried by RetryScheduler, which waits between attempts without blocking the caller
+    // and has a circuit breaker per storage file
+    private static final String CUSTOMERS_FILE = "customers.txt";
+    private static final String PASSWORDS_FILE = "passwords.txt";
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static CompletableFuture<Boolean> saveCustomerWithRetry(Customer customer, String password) {
+        String hashedPassword = hashPassword(password);
+        String customerId = customer.getCustomerID();
+        // Each file is retried on its own, so a password retry does not save the customer again.
+        // A store that could not write the record counts as a failed attempt.
+        return RetryScheduler.retry(CUSTOMERS_FILE, () -> {
+                    if (!customer.saveCustomer()) {
+                        throw new IllegalStateException("Customer " + customerId + " was not saved");
+                    }
+                    return true;
+                }, MAX_ATTEMPTS)
+                .thenCompose(saved -> RetryScheduler.retry(PASSWORDS_FILE, () -> {
+                    if (!BankStores.get().savePassword(customerId, hashedPassword)) {
+                        throw new IllegalStateException("Password for " + customerId + " was not saved");
+                    }
+                    return true;
+                }, MAX_ATTEMPTS).exceptionally(error -> {
+                    // Do not leave a stored customer that can never log in
+                    BankStores.get().deleteCustomer(customerId);
+                    return abandoned(error, false);
+                }))
+                .exceptionally(error -> abandoned(error, false));
     }
 
-    private static boolean verifyPasswordWithRetry(String customerId, String password) {
-        return executeWithRetry(() -> verifyPassword(customerId, password), 3);
+    private static CompletableFuture<Customer> loadCustomerWithRetry(String customerId) {
+        return RetryScheduler.retry(CUSTOMERS_FILE, () -> Customer.loadCustomer(customerId), MAX_ATTEMPTS)
+                .exceptionally(error -> abandoned(error, null));
     }
 
-    // Generic retry method for boolean operations
-    private static boolean executeWithRetry(Supplier<Boolean> operation, int maxRetries) {
-        int attempts = 0;
-        int retryDelay = 100;
-
-        while (attempts < maxRetries) {
-            try {
-                boolean result = operation.get();
-                return result;
-            } catch (Exception e) {
-                attempts++;
-                System.out.println("File operation failed (attempt " + attempts + "): " + e.getMessage());
-
-                if (attempts >= maxRetries) {
-                    System.out.println("Operation failed after " + maxRetries + " attempts: " + e.getMessage());
-                    return false;
-                }
-
-                // Wait before retrying (exponential backoff)
-                try {
-                    System.out.println("Retrying in " + retryDelay + "ms...");
-                    Thread.sleep(retryDelay);
-                    retryDelay *= 2;
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    return false;
-                }
-            }
-        }
-        return false;
+    private static CompletableFuture<Boolean> verifyPasswordWithRetry(String customerId, String password) {
+        return RetryScheduler.retry(PASSWORDS_FILE, () -> verifyPassword(customerId, password), MAX_ATTEMPTS)
+                .exceptionally(error -> abandoned(error, false));
     }
 
-    // Generic retry method for object operations
-    private static <T> T executeWithRetryObject(Supplier<T> operation, int maxRetries) {
-        int attempts = 0;
-        int retryDelay = 100;
-
-        while (attempts < maxRetries) {
-            try {
-                T result = operation.get();
-                return result;
-            } catch (Exception e) {
-                attempts++;
-                System.out.println("File operation failed (attempt " + attempts + "): " + e.getMessage());
-
-                if (attempts >= maxRetries) {
-                    System.out.println("Operation failed after " + maxRetries + " attempts: " + e.getMessage());
-                    return null;
-                }
-
-                try {
-                    System.out.println("Retrying in " + retryDelay + "ms...");
-                    Thread.sleep(retryDelay);
-                    retryDelay *= 2;
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    return null;
-                }
-            }
-        }
-        return null;
+    // Report an operation given up on after its retries, or refused by a circuit breaker
+    private static <T> T abandoned(Throwable error, T fallback) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        System.out.println("File operation abandoned: " + cause.getMessage());
+        return fallback;
     }
 
     // ---------------- LOGIN & REGISTRATION WITH RETRY LOGIC ----------------
     public static Customer login(String id, String password) {
-        System.out.println("Login attempt - ID: " + id);
-
-        Customer customer = loadCustomerWithRetry(id);
+        return loginAsync(id, password).join();
+    }
 
-        if (customer != null) {
-            if (verifyPasswordWithRetry(id, password)) {
-                System.out.println("Login successful for: " + id);
-                return customer;
-            }
-        }
+    /**
+     * Log in by customer ID, completing with null if the customer or password does not match
+     */
+    public static CompletableFuture<Customer> loginAsync(String id, String password) {
+        System.out.println("Login attempt - ID: " + id);
 
-        System.out.println("Login failed for: " + id);
-        return null;
+        return loadCustomerWithRetry(id)
+                .thenCompose(customer -> customer == null
+                        ? CompletableFuture.<Customer>completedFuture(null)
+                        : verifyPasswordWithRetry(id, password).thenApply(verified -> verified ? customer : null))
+                .thenApply(customer -> {
+                    System.out.println((customer != null ? "Login successful for: " : "Login failed for: ") + id);
+                    return customer;
+                });
     }
 
     public static Customer loginWithIdOrEmail(String loginInput, String password) {
         System.out.println("Login attempt - Input: " + loginInput);
 
+        long start = System.nanoTime();
         try {
-            // Reload data from files to ensure we have the latest
-            loadAllDataFromFiles();
+            // Everything is already in memory; only a customer whose files were edited elsewhere is re-read
+            long generation = currentDataGeneration();
+            refreshSharedBalances();
 
             Customer customer = null;
             String customerId = null;
@@ -351,6 +260,14 @@ public class Main {
                 }
             }
 
+            if (customerId != null && isStale(customerId, generation)) {
+                customer = refreshCustomerFromStore(customerId, generation);
+                if (customer != null && loginInput.contains("@")
+                        && !loginInput.trim().equalsIgnoreCase(String.valueOf(customer.getEmail()).trim())) {
+                    customer = null; // the email was changed elsewhere
+                }
+            }
+
             if (customer == null) {
                 System.out.println("Customer not found for: " + loginInput);
                 return null;
@@ -366,14 +283,11 @@ public class Main {
             String inputHash = hashPassword(password);
             if (!storedPassword.equals(inputHash)) {
                 System.out.println("Password mismatch for customer: " + customerId);
-                System.out.println("Stored: " + storedPassword + ", Input: " + inputHash);
                 return null;
             }
 
-            // Load accounts for this customer from files
-            loadCustomerAccountsFromFiles(customer);
-
-            System.out.println("Login successful for: " + customerId);
+            System.out.println("Login successful for: " + customerId + " in "
+                    + (System.nanoTime() - start) / 1000 + " us");
             System.out.println("Customer has " + customer.getAccounts().size() + " accounts");
             return customer;
 
@@ -384,6 +298,117 @@ public class Main {
         }
     }
 
+    // ---------------- FRESHNESS ----------------
+
+    private static synchronized void startSharedRefresh() {
+        if (sharedRefresher != null) return;
+        sharedRefresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shared-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sharedRefresher.scheduleWithFixedDelay(() -> {
+            try {
+                refreshSharedBalances();
+            } catch (RuntimeException e) {
+                System.err.println("Error refreshing shared balances: " + e.getMessage());
+            }
+        }, SHARED_REFRESH_MILLIS, SHARED_REFRESH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static void refreshAllSharedBalances() {
+        for (Customer customer : customerDatabase.values()) {
+            for (Account account : customer.getAccounts()) {
+                account.refreshSharedBalance();
+            }
+        }
+    }
+
+    /**
+     * Take the balances other processes changed in a shared store; only the accounts they changed
+     * are re-read. Accounts opened elsewhere arrive when their owner is refreshed at login.
+     */
+    public static void refreshSharedBalances() {
+        BankStore store = BankStores.get();
+        if (!store.isShared()) return;
+
+        Set<String> changed = store.takeChangedAccounts();
+        if (changed == null) {
+            refreshAllSharedBalances();
+            return;
+        }
+        AccountIndex index = accountIndex;
+        for (String accountNumber : changed) {
+            Account account = index.getAccount(accountNumber);
+            if (account != null) {
+                account.refreshSharedBalance();
+            }
+        }
+    }
+
+    /**
+     * The current data generation, starting a new one if the store was changed by another program
+     */
+    private static synchronized long currentDataGeneration() {
+        BankStore store = BankStores.get();
+        if (store.hasExternalChanges()) {
+            dataGeneration++;
+            store.markCurrent();
+            System.out.println("Data files changed outside the application; customers are refreshed as they log in");
+        }
+        return dataGeneration;
+    }
+
+    private static boolean isStale(String customerID, long generation) {
+        long freshAt = Math.max(loadedGeneration, refreshedGeneration.getOrDefault(customerID, loadedGeneration));
+        return freshAt < generation;
+    }
+
+    /**
+     * Re-read one customer's details, password, accounts and transactions from the store and swap
+     * them into memory and the indexes. Returns null if the customer no longer exists.
+     */
+    private static synchronized Customer refreshCustomerFromStore(String customerID, long generation) {
+        BankStore store = BankStores.get();
+        Customer previous = customerDatabase.get(customerID);
+        if (previous != null) {
+            accountIndex.removeCustomer(previous);
+            uniqueKeys.unregister(customerID);
+        }
+        refreshedGeneration.put(customerID, generation);
+
+        Customer customer = store.loadCustomer(customerID);
+        if (customer == null) {
+            customerDatabase.remove(customerID);
+            passwordDatabase.remove(customerID);
+            System.out.println("Customer " + customerID + " was removed outside the application");
+            return null;
+        }
+        List<Account> legacy = new ArrayList<>();
+        for (FileManager.AccountData data : store.loadAccountsForCustomer(customerID)) {
+            Account account = BulkLoader.createAccount(data, customer);
+            if (account != null) {
+                if (!account.replayEvents(store.loadTransactionsForAccount(data.accountNumber))) {
+                    legacy.add(account);
+                }
+                account.refreshSharedBalance();
+                customer.addAccount(account);
+                accountIndex.put(account, customer);
+            }
+        }
+        openLegacyAccounts(legacy);
+        String password = store.loadPassword(customerID);
+        if (password != null) {
+            passwordDatabase.put(customerID, password);
+        } else {
+            passwordDatabase.remove(customerID);
+        }
+        customerDatabase.put(customerID, customer);
+        reindexCustomer(customer);
+        System.out.println("Refreshed customer " + customerID + " from the store");
+        return customer;
+    }
+
     public static boolean verifyPassword(String customerId, String password) {
         // Check password from loaded passwords
         String storedPassword = passwordDatabase.get(customerId);
@@ -404,7 +429,7 @@ public class Main {
         }
 
         String hashedPassword = hashPassword(newPassword);
-        boolean success = FileManager.updatePassword(customerID, hashedPassword);
+        boolean success = BankStores.get().updatePassword(customerID, hashedPassword);
         if (success) {
             passwordDatabase.put(customerID, hashedPassword);
             System.out.println("Password updated for customer: " + customerID);
@@ -416,18 +441,25 @@ public class Main {
                                            String password, String type, String dob, String idNumber,
                                            String businessName, String regNumber, String businessAddress,
                                            String email) {
+        return registerCustomerAsync(firstname, surname, address, customerID, password, type, dob, idNumber,
+                businessName, regNumber, businessAddress, email).join();
+    }
+
+    /**
+     * Register a customer, completing once the customer and password are saved or given up on
+     */
+    public static CompletableFuture<Boolean> registerCustomerAsync(String firstname, String surname, String address,
+                                                                   String customerID, String password, String type,
+                                                                   String dob, String idNumber, String businessName,
+                                                                   String regNumber, String businessAddress,
+                                                                   String email) {
 
         System.out.println("Registration attempt - ID: " + customerID + ", Email: " + email);
 
-        // Check if customer already exists with retry
-        if (customerExistsWithRetry(customerID)) {
+        // Every stored customer is in memory, so these checks never touch the files
+        if (customerDatabase.containsKey(customerID)) {
             System.out.println("Registration failed - Customer ID already exists: " + customerID);
-            return false;
-        }
-
-        if (isEmailAlreadyRegisteredWithRetry(email)) {
-            System.out.println("Registration failed - Email already exists: " + email);
-            return false;
+            return CompletableFuture.completedFuture(false);
         }
 
         Customer customer;
@@ -437,28 +469,32 @@ public class Main {
             customer = new CustomerBusiness(firstname, surname, address, customerID, businessName, regNumber, businessAddress, email);
         }
 
-        // Use retry logic for saving customer
-        boolean saved = saveCustomerWithRetry(customer, password);
-        if (saved) {
-            customerDatabase.put(customerID, customer);
-            passwordDatabase.put(customerID, hashPassword(password));
-            System.out.println("Registration successful for: " + customerID);
-            return true;
-        } else {
-            System.out.println("Registration failed - Could not save to files after retries");
-            return false;
+        // Claim the email, ID and registration numbers before saving so a concurrent registration cannot take them
+        UniqueKeyRegistry.Key taken = uniqueKeys.register(customer);
+        if (taken != null) {
+            System.out.println("Registration failed - " + taken.getLabel() + " already exists for another customer");
+            return CompletableFuture.completedFuture(false);
         }
+
+        // Use retry logic for saving customer
+        return saveCustomerWithRetry(customer, password).thenApply(saved -> {
+            if (saved) {
+                customerDatabase.put(customerID, customer);
+                passwordDatabase.put(customerID, hashPassword(password));
+                System.out.println("Registration successful for: " + customerID);
+                return true;
+            } else {
+                uniqueKeys.unregister(customerID);
+                System.out.println("Registration failed - Could not save to files after retries");
+                return false;
+            }
+        });
     }
 
     // ---------------- EMAIL MANAGEMENT ----------------
     public static Customer findCustomerByEmail(String email) {
-        for (Customer customer : customerDatabase.values()) {
-            String customerEmail = getCustomerEmail(customer);
-            if (customerEmail != null && customerEmail.equalsIgnoreCase(email)) {
-                return customer;
-            }
-        }
-        return null;
+        String customerID = uniqueKeys.findOwner(UniqueKeyRegistry.Key.EMAIL, email);
+        return customerID != null ? customerDatabase.get(customerID) : null;
     }
 
     public static String getCustomerEmail(Customer customer) {
@@ -474,6 +510,26 @@ public class Main {
         return findCustomerByEmail(email) != null;
     }
 
+    // ---------------- UNIQUE KEYS ----------------
+
+    /**
+     * True if no other customer uses the email, ID number or registration number
+     */
+    public static boolean isUniqueKeyAvailable(UniqueKeyRegistry.Key key, String value, String customerID) {
+        return uniqueKeys.isAvailable(key, value, customerID);
+    }
+
+    /**
+     * Re-index a customer after their email, ID number or registration number changed
+     */
+    public static void reindexCustomer(Customer customer) {
+        UniqueKeyRegistry.Key taken = uniqueKeys.register(customer);
+        if (taken != null) {
+            System.out.println("Warning: " + taken.getLabel() + " of " + customer.getCustomerID()
+                    + " is already used by another customer");
+        }
+    }
+
     // ---------------- CUSTOMER SELF-SERVICE OPERATIONS ----------------
 
     /**
@@ -519,6 +575,8 @@ public class Main {
             // Remove from memory
             customerDatabase.remove(customerID);
             passwordDatabase.remove(customerID);
+            uniqueKeys.unregister(customerID);
+            accountIndex.removeCustomer(customer);
         }
         return success;
     }
@@ -596,16 +654,22 @@ public class Main {
                     return false;
             }
 
-            // Make initial deposit
-            if (initialDeposit > 0) {
-                account.deposit(initialDeposit, "Initial deposit");
-            }
+            // Every account's events start with its opening; the initial deposit follows
+            account.openingEvent(0, "Account opened").saveTransaction(accNum);
 
             // Add account to customer
             customer.openAccount(account);
+            accountIndex.put(account, customer);
 
             // ✅ CRITICAL FIX: Save account to file
-            FileManager.saveAccount(account, customer.getCustomerID());
+            BankStores.get().saveAccount(account, customer.getCustomerID());
+
+            // Make initial deposit; applied and stored by the ledger shard that owns the account
+            if (initialDeposit > 0
+                    && LedgerPipeline.deposit(account, initialDeposit, "Initial deposit") != Posting.Outcome.POSTED) {
+                System.out.println("Account " + accNum + " created, but the initial deposit could not be saved");
+                return false;
+            }
 
             System.out.println(type + " account created successfully for customer: " + customer.getCustomerID());
             return true;
@@ -630,7 +694,8 @@ public class Main {
             return false;
         }
 
-        boolean success = account.deposit(amount, "Deposit");
+        // Applied and stored by the ledger shard that owns the account
+        boolean success = LedgerPipeline.deposit(account, amount, "Deposit") == Posting.Outcome.POSTED;
         if (success) {
             System.out.println("Deposit successful: BWP " + amount + " to account " + accountNumber);
             return true;
@@ -652,7 +717,7 @@ public class Main {
             return false;
         }
 
-        boolean success = account.withdraw(amount, "Withdrawal");
+        boolean success = LedgerPipeline.withdraw(account, amount, "Withdrawal") == Posting.Outcome.POSTED;
         if (success) {
             System.out.println("Withdrawal successful: BWP " + amount + " from account " + accountNumber);
             return true;
@@ -676,41 +741,35 @@ public class Main {
     public static boolean transferFunds(Account fromAccount, String toAccountNumber, double amount, String description) {
         Account toAccount = findAccountByNumber(toAccountNumber);
 
-        if (fromAccount == null || toAccount == null) {
-            System.out.println("Transfer failed: One or both accounts not found");
-            return false;
-        }
-
-        if (fromAccount instanceof SavingsAccount) {
-            System.out.println("Transfer denied: Transfers are not allowed from Savings accounts");
-            return false;
-        }
-
-        if (fromAccount.getAccountNumber().equals(toAccountNumber)) {
-            System.out.println("Transfer failed: Cannot transfer to the same account");
+        // Reserve and commit in two phases when the accounts belong to different ledger shards
+        TransferEngine.Outcome outcome = LedgerPipeline.transfer(fromAccount, toAccount, amount, description);
+        if (outcome != TransferEngine.Outcome.COMPLETED) {
+            System.out.println("Transfer failed: " + outcome.getMessage());
             return false;
         }
+        System.out.println("Transfer successful: BWP " + amount + " from " + fromAccount.getAccountNumber() + " to " + toAccountNumber);
+        return true;
+    }
 
-        if (fromAccount.getBalance() >= amount && amount > 0) {
-            String withdrawDescription = description.isEmpty() ? "Transfer to " + toAccountNumber : description;
-            boolean withdrawSuccess = fromAccount.withdraw(amount, withdrawDescription);
-
-            if (withdrawSuccess) {
-                String depositDescription = description.isEmpty() ? "Transfer from " + fromAccount.getAccountNumber() : description;
-                boolean depositSuccess = toAccount.deposit(amount, depositDescription);
+    // ---------------- BATCH POSTING ----------------
 
-                if (depositSuccess) {
-                    System.out.println("Transfer successful: BWP " + amount + " from " + fromAccount.getAccountNumber() + " to " + toAccountNumber);
-                    return true;
-                } else {
-                    fromAccount.deposit(amount, "Transfer rollback");
-                    System.out.println("Transfer failed: Deposit to target account failed");
-                }
-            }
-        } else {
-            System.out.println("Transfer failed: Insufficient funds or invalid amount");
+    /**
+     * Apply many deposits and withdrawals through the ledger pipeline, which stores each shard's
+     * postings together with its other commands. Postings to one account are checked against its
+     * limits in order, so a withdrawal may use a deposit earlier in the same batch; refused postings
+     * change nothing. Returns one outcome per posting, in the same order.
+     */
+    public static List<Posting.Outcome> postBatch(List<Posting> postings) {
+        long start = System.nanoTime();
+        List<Posting.Outcome> outcomes = LedgerPipeline.postAll(postings, Main::findAccountByNumber);
+        int posted = Collections.frequency(outcomes, Posting.Outcome.POSTED);
+        int failed = Collections.frequency(outcomes, Posting.Outcome.FAILED);
+        if (failed > 0) {
+            System.out.println("Batch posting failed: " + failed + " postings not saved");
         }
-        return false;
+        System.out.println("Batch posted: " + posted + " of " + postings.size() + " postings in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return outcomes;
     }
 
     private static Account findAccount(Customer customer, String accNum) {
@@ -730,27 +789,45 @@ public class Main {
     }
 
     public static Account findAccountByNumber(String accountNumber) {
-        for (Customer customer : customerDatabase.values()) {
-            Account account = findAccountByNumber(customer, accountNumber);
-            if (account != null) return account;
-        }
-        return null;
+        return accountIndex.getAccount(accountNumber);
+    }
+
+    /**
+     * Customer that holds the account, or null
+     */
+    public static Customer findAccountOwner(String accountNumber) {
+        return accountIndex.getOwner(accountNumber);
     }
 
-    public static void payAllInterest(Customer customer) {
+    /**
+     * Drop a closed account from the account index
+     */
+    public static void accountClosed(String accountNumber) {
+        accountIndex.remove(accountNumber);
+    }
+
+    /**
+     * Pay interest on every interest-bearing account of the customer and wait until it is stored.
+     * Returns the number of accounts.
+     */
+    public static int payAllInterest(Customer customer) {
+        int count = 0;
         for (Account acc : customer.getAccounts()) {
             if (acc instanceof InterestBearing) {
-                ((InterestBearing) acc).calculateInterest();
+                LedgerPipeline.payInterest(acc);
+                count++;
             }
         }
+        LedgerPipeline.flush();
+        return count;
     }
 
     public static double getTotalBalance(Customer customer) {
-        double total = 0;
+        long total = Money.ZERO;
         for (Account acc : customer.getAccounts()) {
-            total += acc.getBalance();
+            total = Money.add(total, acc.getBalanceThebe());
         }
-        return total;
+        return Money.toPula(total);
     }
 
     public static String getAccountsInfo(Customer customer) {
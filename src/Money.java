@@ -0,0 +1,121 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Amounts of money as a long count of thebe (1 pula = 100 thebe), so balances add and subtract
+ * exactly. The helpers work on plain longs and allocate nothing, except ofPula and applyRate
+ * which use BigDecimal to round with an explicit rounding mode.
+ *
+ * Amounts entered by users arrive in pula as doubles and are converted once with ofPula.
+ * Text files hold the exact decimal form written by format ("1250.75"), which parse and
+ * RecordTokenizer.moneyField read back without going through a double.
+ */
+public final class Money {
+    public static final long THEBE_PER_PULA = 100;
+    public static final long ZERO = 0;
+
+    private static final double MAX_PULA = (double) (Long.MAX_VALUE / THEBE_PER_PULA);
+
+    private Money() {
+    }
+
+    // ---------------- CONVERSION ----------------
+
+    /**
+     * Thebe for an amount in pula, rounded half up to the nearest thebe
+     */
+    public static long ofPula(double pula) {
+        if (Double.isNaN(pula) || Math.abs(pula) >= MAX_PULA) {
+            throw new ArithmeticException("Amount out of range: " + pula);
+        }
+        // Through the shortest decimal form of the double, so 1.005 rounds up to 101 thebe
+        return BigDecimal.valueOf(pula).movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * The amount in pula, for display and for code that still works in doubles
+     */
+    public static double toPula(long thebe) {
+        return thebe / (double) THEBE_PER_PULA;
+    }
+
+    // ---------------- ARITHMETIC ----------------
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    public static long negate(long thebe) {
+        return Math.negateExact(thebe);
+    }
+
+    /**
+     * The amount multiplied by a rate (0.05 for 5%), rounded to whole thebe with the given mode
+     */
+    public static long applyRate(long thebe, double rate, RoundingMode rounding) {
+        return BigDecimal.valueOf(thebe)
+                .multiply(BigDecimal.valueOf(rate))
+                .setScale(0, rounding)
+                .longValueExact();
+    }
+
+    // ---------------- TEXT ----------------
+
+    /**
+     * Storage form with exactly two decimals, e.g. "-1250.05"
+     */
+    public static String format(long thebe) {
+        StringBuilder text = new StringBuilder(24);
+        long whole = thebe / THEBE_PER_PULA;
+        int fraction = (int) Math.abs(thebe % THEBE_PER_PULA);
+        if (thebe < 0 && whole == 0) {
+            text.append('-');
+        }
+        text.append(whole).append('.');
+        if (fraction < 10) {
+            text.append('0');
+        }
+        return text.append(fraction).toString();
+    }
+
+    /**
+     * Parse a decimal amount in pula such as "1250.75" or "-3". Values with more than two decimals
+     * or an exponent, as written by older versions with String.valueOf(double), are rounded to
+     * the nearest thebe.
+     */
+    public static long parse(CharSequence text) {
+        int length = text.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            i++;
+        }
+        long value = 0;
+        int digits = 0;
+        int scale = -1; // digits after the decimal point, -1 before one is seen
+        for (; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++digits > 16 || scale >= 2) return ofPula(Double.parseDouble(text.toString()));
+                value = value * 10 + (c - '0');
+                if (scale >= 0) scale++;
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                return ofPula(Double.parseDouble(text.toString()));
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Not an amount: \"" + text + "\"");
+        }
+        for (int s = Math.max(scale, 0); s < 2; s++) {
+            value *= 10;
+        }
+        return negative ? -value : value;
+    }
+}
@@ -13,6 +13,7 @@ public class OpenAccountController {
     @FXML private Label messageLabel;
     @FXML private VBox dynamicFieldsContainer;
     @FXML private Label featuresLabel;
+    @FXML private Button createButton;
 
     // Additional fields we need to handle
     private TextField initialDepositField;
@@ -197,35 +198,38 @@ public class OpenAccountController {
                 return;
             }
 
-            // Create account using Main class
-            boolean success = Main.createAccount(currentCustomer, accountType, accountNumber,
-                    employerName, employerAddress, initialDeposit);
-
-            if (success) {
-                showMessage("Account created successfully!", false);
-                accountCreated = true;
-
-                // Refresh the dashboard if available
-                if (dashboardController != null) {
-                    dashboardController.refreshAccounts();
+            // Create account on the bank service thread
+            showMessage("Creating account...", false);
+            BankService.whenDone(BankService.createAccount(currentCustomer, accountType, accountNumber,
+                    employerName, employerAddress, initialDeposit), (success, error) -> {
+                if (error != null) {
+                    showMessage("An error occurred: " + error.getMessage(), true);
+                } else if (success) {
+                    showMessage("Account created successfully!", false);
+                    accountCreated = true;
+
+                    // Refresh the dashboard if available
+                    if (dashboardController != null) {
+                        dashboardController.refreshAccounts();
+                    }
+
+                    // Show success dialog
+                    Alert alert = new Alert(Alert.AlertType.INFORMATION);
+                    alert.setTitle("Account Created");
+                    alert.setHeaderText("Account Created Successfully");
+                    alert.setContentText("Account Number: " + accountNumber +
+                            "\nType: " + accountType +
+                            "\nInitial Deposit: BWP " + String.format("%.2f", initialDeposit));
+                    alert.showAndWait();
+
+                    // Close dialog
+                    if (dialogStage != null) {
+                        dialogStage.close();
+                    }
+                } else {
+                    showMessage("Failed to create account. Please try again.", true);
                 }
-
-                // Show success dialog
-                Alert alert = new Alert(Alert.AlertType.INFORMATION);
-                alert.setTitle("Account Created");
-                alert.setHeaderText("Account Created Successfully");
-                alert.setContentText("Account Number: " + accountNumber +
-                        "\nType: " + accountType +
-                        "\nInitial Deposit: BWP " + String.format("%.2f", initialDeposit));
-                alert.showAndWait();
-
-                // Close dialog
-                if (dialogStage != null) {
-                    dialogStage.close();
-                }
-            } else {
-                showMessage("Failed to create account. Please try again.", true);
-            }
+            }, createButton, accountTypeCombo, initialDepositField);
 
         } catch (NumberFormatException e) {
             showMessage("Please enter a valid number for initial deposit.", true);
@@ -17,17 +17,16 @@ public class PayInterestController {
     }
 
     private void payInterest() {
-        int count = 0;
-        for (Account acc : customer.getAccounts()) {
-            if (acc instanceof InterestBearing) {
-                ((InterestBearing) acc).calculateInterest();
-                count++;
+        // Applied and stored by the ledger pipeline, waited for on the bank service thread
+        BankService.whenDone(BankService.payAllInterest(customer), (count, error) -> {
+            if (error != null) {
+                showAlert("Error", "Interest could not be paid: " + error.getMessage());
+                return;
             }
-        }
-
-        showAlert("Interest Paid",
-                "Monthly interest applied to " + count + " account(s)\n" +
-                        "Total Balance: P" + String.format("%.2f", Main.getTotalBalance(customer)));
+            showAlert("Interest Paid",
+                    "Monthly interest applied to " + count + " account(s)\n" +
+                            "Total Balance: P" + String.format("%.2f", Main.getTotalBalance(customer)));
+        });
     }
 
     @FXML
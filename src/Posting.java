@@ -0,0 +1,61 @@
+/**
+ * One deposit to or withdrawal from an account, as posted in a batch by Main.postBatch.
+ * Clearing files from the branches arrive as thousands of these at a time.
+ */
+public class Posting {
+
+    public enum Type {
+        DEPOSIT,
+        WITHDRAWAL
+    }
+
+    public enum Outcome {
+        POSTED("Posted"),
+        ACCOUNT_NOT_FOUND("Account not found"),
+        INVALID_AMOUNT("Amount must be greater than 0"),
+        INSUFFICIENT_FUNDS("Insufficient funds or withdrawal not allowed"),
+        FAILED("The batch could not be saved");
+
+        private final String message;
+
+        Outcome(String message) {
+            this.message = message;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    private final String accountNumber;
+    private final Type type;
+    private final long amount; // thebe
+    private final String description;
+
+    public Posting(String accountNumber, Type type, double amount, String description) {
+        this(accountNumber, type, amount > 0 ? Money.ofPula(amount) : 0, description);
+    }
+
+    private Posting(String accountNumber, Type type, long amount, String description) {
+        this.accountNumber = accountNumber;
+        this.type = type;
+        this.amount = amount;
+        // Stored rows are pipe-delimited lines
+        this.description = description == null || description.isEmpty()
+                ? (type == Type.DEPOSIT ? "Deposit" : "Withdrawal")
+                : description.replaceAll("[|\\r\\n\\u001e]", " ");
+    }
+
+    /**
+     * A posting with the amount in thebe
+     */
+    public static Posting ofThebe(String accountNumber, Type type, long amount, String description) {
+        return new Posting(accountNumber, type, amount, description);
+    }
+
+    public String getAccountNumber() { return accountNumber; }
+    public Type getType() { return type; }
+    public long getAmountThebe() { return amount; }
+    public double getAmount() { return Money.toPula(amount); }
+    public String getDescription() { return description; }
+}
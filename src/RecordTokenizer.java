@@ -0,0 +1,259 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Splits pipe-delimited records straight out of a byte buffer, normally a read-only mapping of the file.
+ * Field boundaries are kept as offsets into the buffer, so stepping over rows, comparing a field
+ * with a key and parsing numeric fields allocate nothing; only field() and line() build Strings.
+ *
+ * Usage:
+ *   RecordTokenizer records = RecordTokenizer.open(path);
+ *   while (records.next()) {
+ *       if (!records.fieldEquals(0, accountNumber)) continue;
+ *       long amount = records.moneyField(3);
+ *   }
+ */
+public class RecordTokenizer {
+    private static final byte SEPARATOR = '|';
+    private static final byte NEWLINE = '\n';
+    private static final byte RETURN = '\r';
+
+    private final ByteBuffer buffer;
+    private final int base;
+    private final int limit;
+    private int position;
+    private int lineStart;
+    private int lineEnd;
+    private int[] fieldStarts = new int[16];
+    private int[] fieldEnds = new int[16];
+    private int fieldCount;
+
+    public RecordTokenizer(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.base = buffer.position();
+        this.limit = buffer.limit();
+        this.position = base;
+    }
+
+    /**
+     * Map a whole file read-only, so its bytes are tokenized where they are without being copied.
+     * A missing file yields no records. The data files are only appended to or replaced by an
+     * atomic move, never cut short, so the mapped range stays readable.
+     */
+    public static RecordTokenizer open(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return new RecordTokenizer(ByteBuffer.allocate(0));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new RecordTokenizer(map(channel, 0, channel.size(), path));
+        }
+    }
+
+    /**
+     * Read the complete lines of a file from a byte offset onwards. A last line without its newline
+     * may still be being written, so it is left for the next read; consumed() tells where to resume.
+     */
+    public static RecordTokenizer openFrom(Path path, long offset) throws IOException {
+        if (!Files.exists(path)) {
+            return new RecordTokenizer(ByteBuffer.allocate(0));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size() - offset;
+            if (size <= 0) {
+                return new RecordTokenizer(ByteBuffer.allocate(0));
+            }
+            ByteBuffer bytes = map(channel, offset, size, path);
+            int end = bytes.limit();
+            while (end > 0 && bytes.get(end - 1) != NEWLINE) {
+                end--;
+            }
+            bytes.limit(end);
+            return new RecordTokenizer(bytes);
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel, long offset, long size, Path path) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("File too large to tokenize: " + path);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+    }
+
+    /**
+     * Number of bytes this tokenizer covers
+     */
+    public long consumed() {
+        return limit - base;
+    }
+
+    /**
+     * Advance to the next non-empty line. Returns false at the end of the buffer.
+     */
+    public boolean next() {
+        while (position < limit) {
+            lineStart = position;
+            fieldCount = 0;
+            int fieldStart = position;
+            int i = position;
+            while (i < limit) {
+                byte b = buffer.get(i);
+                if (b == NEWLINE) break;
+                if (b == SEPARATOR) {
+                    addField(fieldStart, i);
+                    fieldStart = i + 1;
+                }
+                i++;
+            }
+            position = i + 1;
+            lineEnd = (i > lineStart && buffer.get(i - 1) == RETURN) ? i - 1 : i;
+            if (lineEnd == lineStart) continue; // blank line
+
+            addField(fieldStart, Math.max(fieldStart, lineEnd));
+            return true;
+        }
+        return false;
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldCount++;
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Byte offset of the current line from the start of the buffer
+     */
+    public long lineOffset() {
+        return lineStart - base;
+    }
+
+    /**
+     * Compare a field with a key without decoding it. ASCII keys (account numbers, ids, types)
+     * are compared byte for byte; other keys are encoded once.
+     */
+    public boolean fieldEquals(int index, String value) {
+        int start = fieldStarts[index];
+        int length = fieldEnds[index] - start;
+        if (length != value.length()) {
+            // Only a key with non-ASCII characters can have more bytes than characters
+            return length > value.length() && !isAscii(value)
+                    && fieldEquals(index, value.getBytes(StandardCharsets.UTF_8));
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                return fieldEquals(index, value.getBytes(StandardCharsets.UTF_8));
+            }
+            if (buffer.get(start + i) != (byte) c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+
+    private boolean fieldEquals(int index, byte[] value) {
+        int start = fieldStarts[index];
+        if (fieldEnds[index] - start != value.length) return false;
+        for (int i = 0; i < value.length; i++) {
+            if (buffer.get(start + i) != value[i]) return false;
+        }
+        return true;
+    }
+
+    public String field(int index) {
+        return decode(fieldStarts[index], fieldEnds[index]);
+    }
+
+    public String line() {
+        return decode(lineStart, lineEnd);
+    }
+
+    private String decode(int start, int end) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + start, end - start, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parse an amount in pula such as "-1250.75" straight into thebe; see Money.parse.
+     * Anything but plain digits with at most two decimals goes through Money.parse.
+     */
+    public long moneyField(int index) {
+        int i = fieldStarts[index];
+        int end = fieldEnds[index];
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+
+        long value = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                if (++digits > 16 || scale >= 2) return Money.parse(field(index));
+                value = value * 10 + (b - '0');
+                if (scale >= 0) scale++;
+            } else if (b == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                return Money.parse(field(index));
+            }
+        }
+        if (digits == 0) {
+            return Money.parse(field(index));
+        }
+        for (int s = Math.max(scale, 0); s < 2; s++) {
+            value *= 10;
+        }
+        return negative ? -value : value;
+    }
+
+    public long longField(int index) {
+        int i = fieldStarts[index];
+        int end = fieldEnds[index];
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+        if (i == end || end - i > 18) {
+            return Long.parseLong(field(index));
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                return Long.parseLong(field(index));
+            }
+            value = value * 10 + (b - '0');
+        }
+        return negative ? -value : value;
+    }
+}
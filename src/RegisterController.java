@@ -25,6 +25,7 @@ public class RegisterController {
     @FXML private PasswordField confirmPasswordField;
     @FXML private RadioButton individualRadio;
     @FXML private RadioButton businessRadio;
+    @FXML private Button registerButton;
     @FXML private VBox businessFields;
     @FXML private TextField businessNameField;
     @FXML private TextField regNumberField;
@@ -167,32 +168,35 @@ public class RegisterController {
                 return;
             }
 
-            // Register the customer
-            boolean success = Main.registerCustomer(
+            // Register the customer on the bank service thread
+            BankService.whenDone(BankService.registerCustomer(
                     firstName, lastName, address, customerId,
                     password, customerType, dob, idNumber,
                     businessName, regNumber, businessAddress,
                     email
-            );
-
-            if (success) {
-                String customerTypeDisplay = customerType.equals("I") ? "Individual" : "Business";
-                String interestRate = customerType.equals("I") ? "0.025%" : "0.05%";
-
-                showAlert("Registration Successful",
-                        "Account created successfully!\n\n" +
-                                "Customer Type: " + customerTypeDisplay + "\n" +
-                                "Customer ID: " + customerId + "\n" +
-                                "Name: " + firstName + " " + lastName + "\n" +
-                                "Email: " + email + "\n" +
-                                "Interest Rate: " + interestRate + "\n\n" +
-                                "You can now login with your Customer ID and Password.");
-
-                handleBackToLogin();
-            } else {
-                showAlert("Registration Failed", "Customer ID already exists. Please try registering again.");
-                generateCustomerId(); // Generate new ID if there's a conflict
-            }
+            ), (success, error) -> {
+                if (error != null) {
+                    error.printStackTrace();
+                    showAlert("Registration Error", "An error occurred during registration: " + error.getMessage());
+                } else if (success) {
+                    String customerTypeDisplay = customerType.equals("I") ? "Individual" : "Business";
+                    String interestRate = customerType.equals("I") ? "0.025%" : "0.05%";
+
+                    showAlert("Registration Successful",
+                            "Account created successfully!\n\n" +
+                                    "Customer Type: " + customerTypeDisplay + "\n" +
+                                    "Customer ID: " + customerId + "\n" +
+                                    "Name: " + firstName + " " + lastName + "\n" +
+                                    "Email: " + email + "\n" +
+                                    "Interest Rate: " + interestRate + "\n\n" +
+                                    "You can now login with your Customer ID and Password.");
+
+                    handleBackToLogin();
+                } else {
+                    showAlert("Registration Failed", "Customer ID already exists. Please try registering again.");
+                    generateCustomerId(); // Generate new ID if there's a conflict
+                }
+            }, registerButton);
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -0,0 +1,192 @@
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Retries storage operations without putting the calling thread to sleep. The first attempt runs
+ * on the calling thread; a failed attempt is retried on a scheduler thread after a jittered,
+ * doubling delay, and the result is delivered through a CompletableFuture.
+ *
+ * Each storage file has a circuit breaker. After BREAKER_FAILURES consecutive failures it opens
+ * and operations on that file fail at once with CircuitOpenException; after BREAKER_OPEN_MILLIS
+ * one trial operation is let through, and its outcome closes or reopens the breaker.
+ * Attempt, retry, failure and rejection counts are kept per file and printed by report().
+ */
+public final class RetryScheduler {
+    public static final long BASE_DELAY_MILLIS = Long.getLong("bank.retry.baseDelayMillis", 100);
+    public static final long MAX_DELAY_MILLIS = Long.getLong("bank.retry.maxDelayMillis", 2000);
+    public static final int BREAKER_FAILURES = Integer.getInteger("bank.retry.breakerFailures", 5);
+    public static final long BREAKER_OPEN_MILLIS = Long.getLong("bank.retry.breakerOpenMillis", 5000);
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN // one trial operation in progress
+    }
+
+    /**
+     * Thrown, through the future, when a file's circuit breaker refuses an operation
+     */
+    public static class CircuitOpenException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        public CircuitOpenException(String resource) {
+            super("Circuit breaker open for " + resource);
+        }
+    }
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "storage-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Map<String, Breaker> breakers = new ConcurrentHashMap<>();
+
+    private RetryScheduler() {
+    }
+
+    // ---------------- RETRIES ----------------
+
+    /**
+     * Run an operation on the named storage file, retrying up to maxAttempts in all. The future
+     * fails with the last exception once the attempts run out, or with CircuitOpenException.
+     */
+    public static <T> CompletableFuture<T> retry(String resource, Supplier<T> operation, int maxAttempts) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(breakers.computeIfAbsent(resource, Breaker::new), operation, 1, maxAttempts, result);
+        return result;
+    }
+
+    private static <T> void attempt(Breaker breaker, Supplier<T> operation, int attempt, int maxAttempts,
+                                    CompletableFuture<T> result) {
+        if (!breaker.allow()) {
+            result.completeExceptionally(new CircuitOpenException(breaker.resource));
+            return;
+        }
+        T value;
+        try {
+            value = operation.get();
+        } catch (RuntimeException e) {
+            breaker.failed();
+            System.out.println("Operation on " + breaker.resource + " failed (attempt " + attempt + "): " + e.getMessage());
+            if (attempt >= maxAttempts) {
+                System.out.println("Operation failed after " + maxAttempts + " attempts: " + e.getMessage());
+                result.completeExceptionally(e);
+                return;
+            }
+            if (breaker.getState() == State.OPEN) {
+                // This failure opened the breaker; a retry would only be refused
+                result.completeExceptionally(new CircuitOpenException(breaker.resource));
+                return;
+            }
+            long delay = backoff(attempt);
+            breaker.retried();
+            System.out.println("Retrying in " + delay + "ms...");
+            scheduler.schedule(() -> attempt(breaker, operation, attempt + 1, maxAttempts, result),
+                    delay, TimeUnit.MILLISECONDS);
+            return;
+        }
+        breaker.succeeded();
+        result.complete(value);
+    }
+
+    // Full jitter: anywhere up to the doubled delay, so callers that failed together retry apart
+    private static long backoff(int attempt) {
+        long ceiling = Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(1, Math.max(1, ceiling) + 1);
+    }
+
+    // ---------------- CIRCUIT BREAKERS ----------------
+
+    private static final class Breaker {
+        final String resource;
+        private State state = State.CLOSED;
+        private int consecutiveFailures = 0;
+        private long openedAt = 0;
+        private long attempts = 0;
+        private long retries = 0;
+        private long failures = 0;
+        private long rejected = 0;
+
+        Breaker(String resource) {
+            this.resource = resource;
+        }
+
+        synchronized boolean allow() {
+            if (state == State.OPEN && System.nanoTime() - openedAt >= TimeUnit.MILLISECONDS.toNanos(BREAKER_OPEN_MILLIS)) {
+                state = State.HALF_OPEN;
+                attempts++;
+                return true;
+            }
+            if (state != State.CLOSED) {
+                rejected++;
+                return false;
+            }
+            attempts++;
+            return true;
+        }
+
+        synchronized void succeeded() {
+            if (state != State.CLOSED) {
+                System.out.println("Circuit breaker for " + resource + " closed");
+            }
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+        }
+
+        synchronized void failed() {
+            failures++;
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= BREAKER_FAILURES)) {
+                state = State.OPEN;
+                openedAt = System.nanoTime();
+                System.out.println("Circuit breaker for " + resource + " opened after " + consecutiveFailures
+                        + " consecutive failures");
+            }
+        }
+
+        synchronized void retried() {
+            retries++;
+        }
+
+        synchronized State getState() {
+            return state;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return resource + ": " + state + ", " + attempts + " attempts, " + retries + " retries, "
+                    + failures + " failures, " + rejected + " rejected";
+        }
+    }
+
+    // ---------------- METRICS ----------------
+
+    /**
+     * The breaker state of the named storage file; CLOSED if it has not been used
+     */
+    public static State getState(String resource) {
+        Breaker breaker = breakers.get(resource);
+        return breaker != null ? breaker.getState() : State.CLOSED;
+    }
+
+    /**
+     * One line per storage file with its breaker state and counts
+     */
+    public static String report() {
+        StringBuilder report = new StringBuilder("Storage retries:");
+        if (breakers.isEmpty()) {
+            report.append(" none");
+        }
+        for (Breaker breaker : breakers.values()) {
+            report.append(System.lineSeparator()).append("- ").append(breaker);
+        }
+        return report.toString();
+    }
+}
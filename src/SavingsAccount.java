@@ -1,3 +1,5 @@
+import java.math.RoundingMode;
+
 public class SavingsAccount extends Account implements InterestBearing {
     private double interestRate;
 
@@ -6,17 +8,28 @@ public class SavingsAccount extends Account implements InterestBearing {
         this.interestRate = interestRate;
     }
 
-    // Constructor for loading from file
-    public SavingsAccount(String accountNumber, Customer customer, double balance, double interestRate) {
+    // Constructor for loading from file; balance is in thebe
+    public SavingsAccount(String accountNumber, Customer customer, long balance, double interestRate) {
         super(accountNumber, customer, balance);
         this.interestRate = interestRate;
     }
 
     @Override
     public void calculateInterest() {
-        double interest = balance * (interestRate / 100);
-        deposit(interest, "Interest Payment");
-        System.out.println("Interest calculated and applied: $" + interest);
+        long interest = interestOn(getBalanceThebe());
+        credit(LedgerEvent.INTEREST_PAID, interest, getInterestDescription());
+        System.out.println("Interest calculated and applied: $" + Money.format(interest));
+    }
+
+    @Override
+    public long interestOn(long balance) {
+        // Rate is a percentage; banker's rounding keeps repeated payments unbiased
+        return Money.applyRate(balance, interestRate / 100, RoundingMode.HALF_EVEN);
+    }
+
+    @Override
+    public String getInterestDescription() {
+        return "Interest Payment";
     }
 
     // Remove the duplicate getInterestRate() method and use the one from Account class
@@ -33,7 +46,7 @@ public class SavingsAccount extends Account implements InterestBearing {
     @Override
     public void displayAccountInfo() {
         System.out.println("Savings Account: " + accountNumber);
-        System.out.println("Balance: $" + balance);
+        System.out.println("Balance: $" + Money.format(getBalanceThebe()));
         System.out.println("Interest Rate: " + interestRate + "%");
         System.out.println("Branch: " + branch);
         System.out.println("Transactions: " + transactions.size());
@@ -0,0 +1,344 @@
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary image of every store (customers, passwords, accounts and transactions) for fast restarts.
+ * The header records the size and modification time of each source file at the moment the image
+ * was taken; the image is only used while those files are unchanged, otherwise the text loaders run.
+ *
+ * Layout (big-endian): magic, version, created millis, source stamp, then counted sections of
+ * customers, passwords, accounts and per-account transactions. Strings are a length (-1 for null)
+ * followed by UTF-8 bytes; amounts and balances are longs in thebe, and each transaction ends with
+ * its event sequence number and event name.
+ */
+public class SnapshotStore {
+    public static final String SNAPSHOT_FILE = "bank.snapshot";
+    public static final long SNAPSHOT_INTERVAL_MINUTES = Long.getLong("bank.snapshot.interval.minutes", 10);
+
+    private static final int MAGIC = 0x424B534E; // "BKSN"
+    private static final int VERSION = 3;
+    private static final byte INDIVIDUAL = 0;
+    private static final byte BUSINESS = 1;
+
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * The raw contents of all stores, before accounts are wired to their owners
+     */
+    public static class Image {
+        public final Map<String, Customer> customers;
+        public final Map<String, String> passwords;
+        public final List<FileManager.AccountData> accounts;
+        public final Map<String, List<Transaction>> transactions;
+
+        public Image(Map<String, Customer> customers, Map<String, String> passwords,
+                     List<FileManager.AccountData> accounts, Map<String, List<Transaction>> transactions) {
+            this.customers = customers;
+            this.passwords = passwords;
+            this.accounts = accounts;
+            this.transactions = transactions;
+        }
+    }
+
+    // ---------------- WRITING ----------------
+
+    /**
+     * Read every store on the calling thread and write the image.
+     * Called with the FileManager lock held during shutdown, so it must not hand work to other threads.
+     *
+     * The log is folded before the stamp is taken, since folding rewrites the source files. The
+     * stamp is taken again after reading; if anything was appended meanwhile the image is not written.
+     */
+    public static synchronized boolean writeSnapshot() {
+        long start = System.nanoTime();
+        try {
+            List<String> stamp;
+            Image image;
+            synchronized (FileManager.class) {
+                FileManager.syncPendingMutations();
+                stamp = sourceStamp();
+                image = new Image(
+                        FileManager.loadAllCustomers(),
+                        FileManager.loadAllPasswords(),
+                        FileManager.loadAllAccounts(),
+                        FileManager.loadAllTransactions());
+                if (!stamp.equals(sourceStamp())) {
+                    System.out.println("Data files changed while the snapshot was read, not writing it");
+                    return false;
+                }
+            }
+            write(new File(SNAPSHOT_FILE), stamp, image);
+            System.out.println("Snapshot written: " + image.customers.size() + " customers, "
+                    + image.accounts.size() + " accounts in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error writing snapshot: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void write(File target, List<String> stamp, Image image) throws IOException {
+        File temp = new File(target.getPath() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(stamp.size());
+            for (String entry : stamp) {
+                writeString(out, entry);
+            }
+
+            out.writeInt(image.customers.size());
+            for (Customer customer : image.customers.values()) {
+                writeCustomer(out, customer);
+            }
+
+            out.writeInt(image.passwords.size());
+            for (Map.Entry<String, String> password : image.passwords.entrySet()) {
+                writeString(out, password.getKey());
+                writeString(out, password.getValue());
+            }
+
+            out.writeInt(image.accounts.size());
+            for (FileManager.AccountData account : image.accounts) {
+                writeString(out, account.accountNumber);
+                writeString(out, account.customerID);
+                writeString(out, account.accountType);
+                out.writeLong(account.balance);
+                writeString(out, account.branch);
+                writeString(out, account.extraData);
+            }
+
+            out.writeInt(image.transactions.size());
+            for (Map.Entry<String, List<Transaction>> history : image.transactions.entrySet()) {
+                writeString(out, history.getKey());
+                out.writeInt(history.getValue().size());
+                for (Transaction transaction : history.getValue()) {
+                    writeString(out, transaction.getDate());
+                    writeString(out, transaction.getDescription());
+                    out.writeLong(transaction.getAmountThebe());
+                    writeString(out, transaction.getType());
+                    out.writeLong(transaction.getBalanceThebe());
+                    out.writeLong(transaction.getSequence());
+                    writeString(out, transaction.getEvent().name());
+                }
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp.toPath(), target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeCustomer(DataOutputStream out, Customer customer) throws IOException {
+        if (customer instanceof CustomerBusiness) {
+            CustomerBusiness business = (CustomerBusiness) customer;
+            out.writeByte(BUSINESS);
+            writeString(out, business.getCustomerID());
+            writeString(out, business.getFirstname());
+            writeString(out, business.getSurname());
+            writeString(out, business.getAddress());
+            writeString(out, business.getBusinessName());
+            writeString(out, business.getRegistrationNumber());
+            writeString(out, business.getBusinessAddress());
+            writeString(out, business.getEmail());
+        } else {
+            CustomerIndividual individual = (CustomerIndividual) customer;
+            out.writeByte(INDIVIDUAL);
+            writeString(out, individual.getCustomerID());
+            writeString(out, individual.getFirstname());
+            writeString(out, individual.getSurname());
+            writeString(out, individual.getAddress());
+            writeString(out, individual.getDateOfBirth());
+            writeString(out, individual.getIdNumber());
+            writeString(out, individual.getEmail());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // ---------------- READING ----------------
+
+    /**
+     * Memory-map the snapshot and decode it. Returns null when there is no snapshot, its version
+     * differs, or any source file changed after it was taken; callers then load the text files.
+     */
+    public static Image readSnapshot() {
+        File file = new File(SNAPSHOT_FILE);
+        if (!file.exists()) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                System.out.println("Snapshot too large to map, loading text files");
+                return null;
+            }
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (in.getInt() != MAGIC) {
+                System.out.println("Snapshot has an unknown format, loading text files");
+                return null;
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                System.out.println("Snapshot version " + version + " does not match " + VERSION + ", loading text files");
+                return null;
+            }
+            in.getLong(); // created millis
+
+            int stampSize = in.getInt();
+            List<String> stamp = new ArrayList<>(stampSize);
+            for (int i = 0; i < stampSize; i++) {
+                stamp.add(readString(in));
+            }
+            if (!stamp.equals(sourceStamp())) {
+                System.out.println("Snapshot is older than the data files, loading text files");
+                return null;
+            }
+
+            int customerCount = in.getInt();
+            Map<String, Customer> customers = new HashMap<>(customerCount * 2);
+            for (int i = 0; i < customerCount; i++) {
+                Customer customer = readCustomer(in);
+                customers.put(customer.getCustomerID(), customer);
+            }
+
+            int passwordCount = in.getInt();
+            Map<String, String> passwords = new HashMap<>(passwordCount * 2);
+            for (int i = 0; i < passwordCount; i++) {
+                passwords.put(readString(in), readString(in));
+            }
+
+            int accountCount = in.getInt();
+            List<FileManager.AccountData> accounts = new ArrayList<>(accountCount);
+            for (int i = 0; i < accountCount; i++) {
+                String accountNumber = readString(in);
+                String customerID = readString(in);
+                String accountType = readString(in);
+                long balance = in.getLong();
+                String branch = readString(in);
+                String extraData = readString(in);
+                accounts.add(new FileManager.AccountData(accountNumber, customerID, accountType, balance, branch, extraData));
+            }
+
+            int historyCount = in.getInt();
+            Map<String, List<Transaction>> transactions = new HashMap<>(historyCount * 2);
+            for (int i = 0; i < historyCount; i++) {
+                String accountNumber = readString(in);
+                int size = in.getInt();
+                List<Transaction> history = new ArrayList<>(size);
+                for (int j = 0; j < size; j++) {
+                    String date = readString(in);
+                    String description = readString(in);
+                    long amount = in.getLong();
+                    String type = readString(in);
+                    long balance = in.getLong();
+                    long sequence = in.getLong();
+                    LedgerEvent event = LedgerEvent.parse(readString(in), type);
+                    history.add(Transaction.ofEvent(event, sequence, date, description, amount, type, balance));
+                }
+                transactions.put(accountNumber, history);
+            }
+
+            System.out.println("Loaded snapshot: " + customers.size() + " customers, " + accounts.size() + " accounts");
+            return new Image(customers, passwords, accounts, transactions);
+
+        } catch (IOException | BufferUnderflowException | ClassCastException e) {
+            System.err.println("Error reading snapshot, loading text files: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static Customer readCustomer(MappedByteBuffer in) throws IOException {
+        byte type = in.get();
+        String customerID = readString(in);
+        String firstname = readString(in);
+        String surname = readString(in);
+        String address = readString(in);
+        if (type == BUSINESS) {
+            String businessName = readString(in);
+            String regNumber = readString(in);
+            String businessAddress = readString(in);
+            String email = readString(in);
+            return new CustomerBusiness(firstname, surname, address, customerID, businessName, regNumber, businessAddress, email);
+        }
+        if (type != INDIVIDUAL) {
+            throw new IOException("Unknown customer type " + type);
+        }
+        String dob = readString(in);
+        String idNumber = readString(in);
+        String email = readString(in);
+        return new CustomerIndividual(firstname, surname, address, customerID, dob, idNumber, email);
+    }
+
+    private static String readString(MappedByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ---------------- SOURCE STAMP ----------------
+
+    /**
+     * Size and modification time of every file the snapshot is built from
+     */
+    private static List<String> sourceStamp() throws IOException {
+        return FileManager.stamp(FileManager.dataSourceFiles());
+    }
+
+    // ---------------- PERIODIC SNAPSHOTS ----------------
+
+    /**
+     * Refresh the snapshot in the background every SNAPSHOT_INTERVAL_MINUTES (0 disables it)
+     */
+    public static synchronized void startPeriodicSnapshots() {
+        if (scheduler != null || SNAPSHOT_INTERVAL_MINUTES <= 0) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(SnapshotStore::writeSnapshot,
+                SNAPSHOT_INTERVAL_MINUTES, SNAPSHOT_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Stop the background writer, waiting for a snapshot that is already being written
+     */
+    public static void stopPeriodicSnapshots() {
+        ScheduledExecutorService running;
+        synchronized (SnapshotStore.class) {
+            running = scheduler;
+            scheduler = null;
+        }
+        if (running == null) return;
+        running.shutdown();
+        try {
+            running.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -4,43 +4,80 @@ import java.time.format.DateTimeFormatter;
 public class Transaction {
     private String date;
     private String description;
-    private double amount;
+    private long amount;  // thebe
     private String type;
-    private double balance;
+    private long balance; // thebe
+    private LedgerEvent event;
+    private long sequence; // position in the account's events; 0 for rows stored before events were numbered
     private static final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
     public Transaction(String date, String description, double amount, String type, double balance) {
+        this(date, description, type, Money.ofPula(amount), Money.ofPula(balance));
+    }
+
+    private Transaction(String date, String description, String type, long amount, long balance) {
         this.date = date;
         this.description = description;
         this.amount = amount;
         this.type = type;
         this.balance = balance;
+        this.event = LedgerEvent.parse(null, type);
+    }
+
+    /**
+     * A transaction with the amount and resulting balance in thebe
+     */
+    public static Transaction ofThebe(String date, String description, long amount, String type, long balance) {
+        return new Transaction(date, description, type, amount, balance);
+    }
+
+    /**
+     * A ledger event: a transaction that is the given event number of its account
+     */
+    public static Transaction ofEvent(LedgerEvent event, long sequence, String date, String description,
+                                      long amount, String type, long balance) {
+        Transaction transaction = new Transaction(date, description, type, amount, balance);
+        transaction.event = event;
+        transaction.sequence = sequence;
+        return transaction;
     }
 
     // Getters
     public String getDate() { return date; }
     public String getDescription() { return description; }
-    public double getAmount() { return amount; }
+    public double getAmount() { return Money.toPula(amount); }
     public String getType() { return type; }
-    public double getBalance() { return balance; }
+    public double getBalance() { return Money.toPula(balance); }
+    public long getAmountThebe() { return amount; }
+    public long getBalanceThebe() { return balance; }
+    public LedgerEvent getEvent() { return event; }
+    public long getSequence() { return sequence; }
+
+    /**
+     * The change this event makes to the balance: withdrawals count negative, whatever the sign
+     * they were stored with
+     */
+    public long getBalanceChangeThebe() {
+        return isWithdrawal() ? -Math.abs(amount) : amount;
+    }
 
     // Setters
     public void setDate(String date) { this.date = date; }
     public void setDescription(String description) { this.description = description; }
-    public void setAmount(double amount) { this.amount = amount; }
+    public void setAmount(double amount) { this.amount = Money.ofPula(amount); }
     public void setType(String type) { this.type = type; }
-    public void setBalance(double balance) { this.balance = balance; }
+    public void setBalance(double balance) { this.balance = Money.ofPula(balance); }
 
     // File-based save method
     public void saveTransaction(String accountNumber) {
-        FileManager.saveTransaction(this, accountNumber);
+        BankStores.get().saveTransaction(this, accountNumber);
         System.out.println("Transaction saved for account: " + accountNumber);
     }
 
     @Override
     public String toString() {
-        return String.format("%s | %s | %s: $%.2f | Balance: $%.2f",
-                date, description, type, amount, balance);
+        return String.format("%s | %s | %s: $%s | Balance: $%s",
+                date, description, type, Money.format(amount), Money.format(balance));
     }
 
     // Helper method to get formatted date
@@ -0,0 +1,489 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Transaction history partitioned by account-number hash.
+ * Each partition is a directory of append-only segment files that roll over at a size
+ * threshold, plus a manifest listing its segments and the accounts that were dropped.
+ * Reading one account's history only touches that account's partition.
+ * Appends go through a shared GroupCommitWriter, so concurrent postings share one force per batch.
+ *
+ * Dropped rows stay in their segments until compact() rewrites a partition whose share of
+ * dead rows has grown past a threshold.
+ *
+ * A shared store is appended to by several processes: each write locks the active segment, and
+ * segments neither roll over nor get compacted, because the other processes only know the
+ * segments listed when they opened the store.
+ *
+ * Manifest records (one per line):
+ *   SEGMENT|seg-000001.log
+ *   DROP|accountNumber|segmentIndex|offset   (rows before that position are dead)
+ */
+public class TransactionStore {
+    private static final String MANIFEST_FILE = "manifest.txt";
+    private static final String SEGMENT_PREFIX = "seg-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final File directory;
+    private final long segmentSizeLimit;
+    private final boolean shared;
+    private final Partition[] partitions;
+    private final GroupCommitWriter writer;
+
+    public TransactionStore(String directoryPath, int partitionCount, long segmentSizeLimit,
+                            String durabilitySetting) throws IOException {
+        this(directoryPath, partitionCount, segmentSizeLimit, durabilitySetting, false);
+    }
+
+    public TransactionStore(String directoryPath, int partitionCount, long segmentSizeLimit,
+                            String durabilitySetting, boolean shared) throws IOException {
+        this.directory = new File(directoryPath);
+        this.segmentSizeLimit = segmentSizeLimit;
+        this.shared = shared;
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create transaction store directory: " + directoryPath);
+        }
+
+        this.partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition(new File(directory, String.format("p%03d", i)));
+        }
+        this.writer = GroupCommitWriter.fromSetting("transaction-writer", durabilitySetting);
+    }
+
+    public GroupCommitWriter.Durability getDurability() {
+        return writer.getDurability();
+    }
+
+    /**
+     * True if a store has already been created at this path (used to decide on importing transactions.txt)
+     */
+    public static boolean exists(String directoryPath) {
+        return new File(directoryPath, String.format("p%03d", 0) + File.separator + MANIFEST_FILE).exists();
+    }
+
+    /**
+     * Delete every partition and segment under the store directory (used by a data reset)
+     */
+    public static void destroy(String directoryPath) throws IOException {
+        Path root = Paths.get(directoryPath);
+        if (!Files.exists(root)) return;
+        try (java.util.stream.Stream<Path> paths = Files.walk(root)) {
+            List<Path> all = new ArrayList<>();
+            paths.forEach(all::add);
+            Collections.reverse(all);
+            for (Path path : all) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private Partition partitionFor(String accountNumber) {
+        return partitions[Math.floorMod(accountNumber.hashCode(), partitions.length)];
+    }
+
+    // ---------------- TRANSACTION OPERATIONS ----------------
+
+    /**
+     * Queue one pipe-delimited transaction row for an account.
+     * The future completes once the row is durable under the configured mode.
+     */
+    public CompletableFuture<Void> append(String accountNumber, String line) {
+        Partition partition = partitionFor(accountNumber);
+        synchronized (partition) {
+            partition.submitted++;
+        }
+        CompletableFuture<Void> done = writer.submit(partition, line);
+        done.whenComplete((ignored, error) -> {
+            synchronized (partition) {
+                partition.completed++;
+                partition.notifyAll();
+            }
+        });
+        return done;
+    }
+
+    /**
+     * Hand each live row of one account to the handler, oldest first.
+     * The tokenizer is only valid inside the callback.
+     */
+    public void readAccount(String accountNumber, Consumer<RecordTokenizer> handler) throws IOException {
+        Partition partition = partitionFor(accountNumber);
+        synchronized (partition) {
+            partition.scan(accountNumber, handler);
+        }
+    }
+
+    /**
+     * Hand every live row in the store to the handler, reading each segment once
+     */
+    public void readAll(Consumer<RecordTokenizer> handler) throws IOException {
+        for (Partition partition : partitions) {
+            synchronized (partition) {
+                partition.scan(null, handler);
+            }
+        }
+    }
+
+    /**
+     * Mark all rows of an account as dead without rewriting any segment
+     */
+    public void dropAccount(String accountNumber) throws IOException {
+        Partition partition = partitionFor(accountNumber);
+        synchronized (partition) {
+            partition.drop(accountNumber);
+        }
+    }
+
+    /**
+     * Import rows from the single-file transactions.txt layout
+     */
+    public int importLegacy(File legacyFile) throws IOException {
+        if (!legacyFile.exists()) {
+            return 0;
+        }
+        int count = 0;
+        CompletableFuture<Void> last = CompletableFuture.completedFuture(null);
+        try (BufferedReader reader = new BufferedReader(new FileReader(legacyFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf('|');
+                if (separator > 0) {
+                    last = append(line.substring(0, separator), line);
+                    count++;
+                }
+            }
+        }
+        last.join();
+        System.out.println("Imported " + count + " transactions into " + directory.getName() + "/");
+        return count;
+    }
+
+    /**
+     * Rewrite every partition whose dead rows make up at least garbageRatio of its rows.
+     * Returns the number of partitions rewritten.
+     */
+    public int compact(double garbageRatio) throws IOException {
+        if (shared) {
+            return 0;
+        }
+        int compacted = 0;
+        for (Partition partition : partitions) {
+            synchronized (partition) {
+                if (partition.compact(garbageRatio)) compacted++;
+            }
+        }
+        return compacted;
+    }
+
+    /**
+     * Force every partition's active segment. Under ASYNC durability rows are only written, so this
+     * makes them durable before the write-ahead log record that covers them is truncated.
+     */
+    public void force() throws IOException {
+        for (Partition partition : partitions) {
+            synchronized (partition) {
+                partition.force();
+            }
+        }
+    }
+
+    public int getSegmentCount() {
+        int count = 0;
+        for (Partition partition : partitions) {
+            synchronized (partition) {
+                count += partition.segments.size();
+            }
+        }
+        return count;
+    }
+
+    public void close() {
+        writer.close();
+        for (Partition partition : partitions) {
+            synchronized (partition) {
+                partition.close();
+            }
+        }
+    }
+
+    // ---------------- PARTITION ----------------
+
+    private class Partition implements GroupCommitWriter.Target {
+        private final File directory;
+        private final List<String> segments = new ArrayList<>();
+        private final Map<String, long[]> drops = new HashMap<>(); // account -> {segmentIndex, offset}
+        private FileChannel manifest;
+        private FileChannel activeSegment;
+        private long activeSize;
+        private long submitted; // rows queued for this partition
+        private long completed; // rows the writer has finished with
+        private int nextSegmentNumber = 1;
+        private int dropsAtLastCheck = 0; // compaction only rescans after new drops
+
+        Partition(File directory) throws IOException {
+            this.directory = directory;
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Cannot create partition directory: " + directory.getPath());
+            }
+            loadManifest();
+            deleteUnlistedSegments();
+            openManifest();
+            if (segments.isEmpty()) {
+                rollSegment();
+            } else {
+                openActiveSegment();
+            }
+        }
+
+        private void loadManifest() throws IOException {
+            File manifestFile = new File(directory, MANIFEST_FILE);
+            if (!manifestFile.exists()) return;
+
+            for (String line : Files.readAllLines(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+                String[] parts = line.split("\\|");
+                if (parts.length == 2 && "SEGMENT".equals(parts[0])) {
+                    // Processes opening a new shared store at once may each list the first segment
+                    if (!segments.contains(parts[1])) segments.add(parts[1]);
+                } else if (parts.length == 4 && "DROP".equals(parts[0])) {
+                    drops.put(parts[1], new long[]{Long.parseLong(parts[2]), Long.parseLong(parts[3])});
+                }
+            }
+        }
+
+        private void openManifest() throws IOException {
+            manifest = FileChannel.open(new File(directory, MANIFEST_FILE).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+
+        /**
+         * Remove segments a compaction wrote or retired but the manifest does not list (crash mid-compaction)
+         */
+        private void deleteUnlistedSegments() throws IOException {
+            for (String segment : segments) {
+                nextSegmentNumber = Math.max(nextSegmentNumber, segmentNumber(segment) + 1);
+            }
+            File[] files = directory.listFiles();
+            if (files == null) return;
+            for (File file : files) {
+                String name = file.getName();
+                boolean orphanSegment = name.startsWith(SEGMENT_PREFIX) && !segments.contains(name);
+                if (orphanSegment || name.equals(MANIFEST_FILE + ".tmp")) {
+                    Files.deleteIfExists(file.toPath());
+                }
+            }
+        }
+
+        private int segmentNumber(String segment) {
+            try {
+                return Integer.parseInt(segment.substring(SEGMENT_PREFIX.length(), segment.length() - SEGMENT_SUFFIX.length()));
+            } catch (RuntimeException e) {
+                return 0;
+            }
+        }
+
+        private void writeManifest(String record) throws IOException {
+            writeFully(manifest, record + "\n");
+            manifest.force(false);
+        }
+
+        private void openActiveSegment() throws IOException {
+            Path path = new File(directory, segments.get(segments.size() - 1)).toPath();
+            activeSegment = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            activeSize = activeSegment.size();
+        }
+
+        private void rollSegment() throws IOException {
+            if (activeSegment != null) {
+                activeSegment.force(false);
+                activeSegment.close();
+            }
+            String name = String.format("%s%06d%s", SEGMENT_PREFIX, nextSegmentNumber++, SEGMENT_SUFFIX);
+            segments.add(name);
+            writeManifest("SEGMENT|" + name);
+            openActiveSegment();
+        }
+
+        @Override
+        public synchronized void write(List<String> lines) throws IOException {
+            if (!shared && activeSize >= segmentSizeLimit) {
+                rollSegment();
+            }
+            StringBuilder block = new StringBuilder();
+            for (String line : lines) {
+                block.append(line).append('\n');
+            }
+            if (!shared) {
+                activeSize += writeFully(activeSegment, block.toString());
+                return;
+            }
+            // Other processes append to the same segment; the lock keeps each block in one piece
+            try (FileLock ignored = activeSegment.lock()) {
+                writeFully(activeSegment, block.toString());
+                activeSize = activeSegment.size();
+            }
+        }
+
+        @Override
+        public synchronized void force() throws IOException {
+            activeSegment.force(false);
+        }
+
+        /**
+         * Pass live rows to the handler. A null account passes every account's rows.
+         * Rows of other accounts are rejected by comparing bytes, so they cost no allocation.
+         * Returns the number of rows read, live or dead.
+         */
+        long scan(String accountNumber, Consumer<RecordTokenizer> handler) throws IOException {
+            // Callers read their own writes
+            awaitPendingRows();
+
+            long[] onlyDrop = accountNumber != null ? drops.get(accountNumber) : null;
+            long rowsRead = 0;
+
+            for (int index = 0; index < segments.size(); index++) {
+                if (onlyDrop != null && index < onlyDrop[0]) continue; // whole segment predates the drop
+
+                RecordTokenizer rows = RecordTokenizer.open(new File(directory, segments.get(index)).toPath());
+                while (rows.next()) {
+                    if (rows.fieldCount() < 2) continue;
+                    rowsRead++;
+
+                    long[] drop;
+                    if (accountNumber != null) {
+                        if (!rows.fieldEquals(0, accountNumber)) continue;
+                        drop = onlyDrop;
+                    } else {
+                        drop = drops.isEmpty() ? null : drops.get(rows.field(0));
+                    }
+                    if (drop != null && (index < drop[0] || (index == drop[0] && rows.lineOffset() < drop[1]))) continue;
+                    handler.accept(rows);
+                }
+            }
+            return rowsRead;
+        }
+
+        /**
+         * Copy the live rows into fresh segments and switch the manifest over to them in one
+         * atomic move, then delete the old segments. Skipped while dead rows are below the ratio.
+         */
+        boolean compact(double garbageRatio) throws IOException {
+            if (drops.isEmpty() || drops.size() == dropsAtLastCheck) return false;
+            dropsAtLastCheck = drops.size();
+
+            List<String> live = new ArrayList<>();
+            long total = scan(null, row -> live.add(row.line()));
+            long dead = total - live.size();
+            if (total == 0 || (double) dead / total < garbageRatio) return false;
+
+            // Write the live rows into new segments, rolling at the size limit
+            List<String> newSegments = new ArrayList<>();
+            StringBuilder block = new StringBuilder();
+            for (int i = 0; i <= live.size(); i++) {
+                boolean last = i == live.size();
+                if (!last) block.append(live.get(i)).append('\n');
+                if ((last && block.length() > 0) || block.length() >= segmentSizeLimit) {
+                    String name = String.format("%s%06d%s", SEGMENT_PREFIX, nextSegmentNumber++, SEGMENT_SUFFIX);
+                    Path path = new File(directory, name).toPath();
+                    try (FileChannel channel = FileChannel.open(path,
+                            StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                        writeFully(channel, block.toString());
+                        channel.force(true);
+                    }
+                    newSegments.add(name);
+                    block.setLength(0);
+                }
+            }
+
+            StringBuilder manifestText = new StringBuilder();
+            for (String name : newSegments) {
+                manifestText.append("SEGMENT|").append(name).append('\n');
+            }
+            Path manifestPath = new File(directory, MANIFEST_FILE).toPath();
+            Path manifestTemp = new File(directory, MANIFEST_FILE + ".tmp").toPath();
+            try (FileChannel channel = FileChannel.open(manifestTemp,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(channel, manifestText.toString());
+                channel.force(true);
+            }
+
+            activeSegment.close();
+            activeSegment = null;
+            manifest.close();
+            try {
+                Files.move(manifestTemp, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(manifestTemp, manifestPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            for (String old : segments) {
+                Files.deleteIfExists(new File(directory, old).toPath());
+            }
+            segments.clear();
+            segments.addAll(newSegments);
+            drops.clear();
+            dropsAtLastCheck = 0;
+
+            openManifest();
+            if (segments.isEmpty()) {
+                rollSegment();
+            } else {
+                openActiveSegment();
+            }
+            System.out.println("Compacted transaction partition " + directory.getName() + ": "
+                    + total + " -> " + live.size() + " rows");
+            return true;
+        }
+
+        /**
+         * Wait until the writer has finished with every row already queued for this partition
+         */
+        private void awaitPendingRows() throws IOException {
+            while (completed < submitted) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for pending transactions");
+                }
+            }
+        }
+
+        void drop(String accountNumber) throws IOException {
+            // Queued rows of the account must land before the drop position, not after it
+            awaitPendingRows();
+            long[] position = {segments.size() - 1, shared ? activeSegment.size() : activeSize};
+            writeManifest("DROP|" + accountNumber + "|" + position[0] + "|" + position[1]);
+            drops.put(accountNumber, position);
+        }
+
+        void close() {
+            try {
+                if (activeSegment != null) {
+                    activeSegment.force(false);
+                    activeSegment.close();
+                }
+                manifest.close();
+            } catch (IOException e) {
+                System.err.println("Error closing transaction partition " + directory.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static int writeFully(FileChannel channel, String text) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        int length = bytes.remaining();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        return length;
+    }
+}
@@ -4,7 +4,6 @@ import javafx.stage.Stage;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import java.util.List;
-import java.util.Map;
 
 public class TransferController {
 
@@ -17,6 +16,7 @@ public class TransferController {
     @FXML private TextField toAccountField;
     @FXML private TextField amountField;
     @FXML private TextField descriptionField;
+    @FXML private Button transferBtn;
     @FXML private TableView<Transaction> recentTransfersTable;
 
     public void setAccount(Account account) {
@@ -61,68 +61,37 @@ public class TransferController {
             return;
         }
 
-        // Perform transfer with file operations
-        boolean success = performTransferWithFiles(account, toAccount, amount, description);
-
-        if (success) {
-            showStatus("Transfer successful!", false);
-            clearForm();
-            updateAccountDisplay();
-            loadRecentTransfers();
-
-            // Refresh account data from files
-            refreshAccountData();
-        } else {
-            // Show specific failure message
-            if (account instanceof SavingsAccount) {
-                showStatus("Transfer failed: Transfers are not allowed from Savings accounts", true);
-            } else if (account instanceof Investment) {
-                showStatus("Transfer failed: Investment account must maintain minimum balance of P1000", true);
+        // Both legs are checked, applied and saved together on the bank service thread
+        showStatus("Processing transfer...", false);
+        BankService.whenDone(BankService.transfer(account, toAccount, amount, description), (outcome, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+                showStatus("Transfer failed: " + error.getMessage(), true);
+            } else if (outcome == TransferEngine.Outcome.COMPLETED) {
+                System.out.println("Transfer completed successfully and saved to files");
+                showStatus("Transfer successful!", false);
+                clearForm();
+                updateAccountDisplay();
+                loadRecentTransfers();
+
+                // Refresh account data from files
+                refreshAccountData();
             } else {
-                showStatus("Transfer failed: Insufficient funds or withdrawal not allowed", true);
+                System.out.println("Transfer failed: " + outcome.getMessage());
+                showTransferError(outcome);
             }
-        }
+        }, transferBtn, toAccountField, amountField, descriptionField);
     }
 
     /**
-     * Perform transfer with file operations to ensure both withdrawal and deposit are saved
+     * Show why the transfer was refused
      */
-    private boolean performTransferWithFiles(Account fromAccount, Account toAccount, double amount, String description) {
-        // Check if fromAccount is Savings Account - prevent transfers
-        if (fromAccount instanceof SavingsAccount) {
-            showStatus("Transfer denied: Transfers are not allowed from Savings accounts", true);
-            return false;
-        }
-
-        // Check sufficient funds
-        if (fromAccount.getBalance() < amount) {
-            showStatus("Insufficient funds for transfer", true);
-            return false;
-        }
-
-        // For Investment accounts, check minimum balance
-        if (fromAccount instanceof Investment) {
-            double minBalance = 1000;
-            if ((fromAccount.getBalance() - amount) < minBalance) {
-                showStatus("Transfer failed: Investment account must maintain minimum balance of P1000", true);
-                return false;
-            }
-        }
-
-        // Perform withdrawal from source account
-        boolean withdrawSuccess = fromAccount.withdraw(amount,
-                description.isEmpty() ? "Transfer to " + toAccount.getAccountNumber() : description);
-
-        if (!withdrawSuccess) {
-            return false;
+    private void showTransferError(TransferEngine.Outcome outcome) {
+        if (outcome == TransferEngine.Outcome.INSUFFICIENT_FUNDS && account instanceof Investment) {
+            showStatus("Transfer failed: Investment account must maintain minimum balance of P1000", true);
+        } else {
+            showStatus("Transfer failed: " + outcome.getMessage(), true);
         }
-
-        // Perform deposit to destination account
-        toAccount.deposit(amount,
-                description.isEmpty() ? "Transfer from " + fromAccount.getAccountNumber() : description);
-
-        System.out.println("Transfer completed successfully and saved to files");
-        return true;
     }
 
     /**
@@ -130,18 +99,10 @@ public class TransferController {
      */
     private void refreshAccountData() {
         if (account != null && currentCustomer != null) {
-            // Refresh customer data from files by loading all customers and finding the specific one
-            Map<String, Customer> allCustomers = FileManager.loadAllCustomers();
-            Customer updatedCustomer = allCustomers.get(currentCustomer.getCustomerID());
-
-            if (updatedCustomer != null) {
-                // Find the updated account in the refreshed customer
-                for (Account acc : updatedCustomer.getAccounts()) {
-                    if (acc.getAccountNumber().equals(account.getAccountNumber())) {
-                        this.account = acc;
-                        break;
-                    }
-                }
+            // The account index holds the live account objects, so no files are read
+            Account updatedAccount = Main.findAccountByNumber(account.getAccountNumber());
+            if (updatedAccount != null) {
+                this.account = updatedAccount;
             }
         }
     }
@@ -185,29 +146,14 @@ public class TransferController {
             }
         }
 
-        // Search in all customers using FileManager
-        Map<String, Customer> allCustomers = FileManager.loadAllCustomers();
-        for (Customer customer : allCustomers.values()) {
-            for (Account acc : customer.getAccounts()) {
-                if (acc.getAccountNumber().equals(accountNumber)) {
-                    return acc;
-                }
-            }
-        }
-        return null;
+        // Any other account comes from the in-memory account index
+        return Main.findAccountByNumber(accountNumber);
     }
 
     private Customer findCustomerForAccount(Account account) {
-        // Load all customers and find the one that owns this account
-        Map<String, Customer> allCustomers = FileManager.loadAllCustomers();
-        for (Customer customer : allCustomers.values()) {
-            for (Account acc : customer.getAccounts()) {
-                if (acc.getAccountNumber().equals(account.getAccountNumber())) {
-                    return customer;
-                }
-            }
-        }
-        return null;
+        if (account == null) return null;
+        Customer owner = Main.findAccountOwner(account.getAccountNumber());
+        return owner != null ? owner : account.getCustomer();
     }
 
     private void loadRecentTransfers() {
@@ -215,9 +161,10 @@ public class TransferController {
             ObservableList<Transaction> recentTransfers = FXCollections.observableArrayList();
 
             // Get last 5 transfer transactions
+            List<Transaction> history = account.getTransactions();
             int count = 0;
-            for (int i = account.getTransactions().size() - 1; i >= 0 && count < 5; i--) {
-                Transaction transaction = account.getTransactions().get(i);
+            for (int i = history.size() - 1; i >= 0 && count < 5; i--) {
+                Transaction transaction = history.get(i);
                 if (transaction.getType().equalsIgnoreCase("WITHDRAWAL") &&
                         transaction.getDescription().toLowerCase().contains("transfer")) {
                     recentTransfers.add(transaction);
@@ -0,0 +1,47 @@
+/**
+ * The rules and outcomes of a transfer between two accounts. Transfers are applied and stored by
+ * LedgerPipeline, which takes the place of account locks: each account is changed only by its
+ * shard's applier thread, so two transfers over the same accounts cannot deadlock or interleave.
+ * Both legs are stored with a single write, so no crash ever leaves the money taken from one
+ * account but not added to the other.
+ */
+public class TransferEngine {
+    public enum Outcome {
+        COMPLETED("Transfer successful"),
+        ACCOUNT_NOT_FOUND("One or both accounts not found"),
+        SAME_ACCOUNT("Cannot transfer to the same account"),
+        INVALID_AMOUNT("Amount must be greater than 0"),
+        NOT_ALLOWED("Transfers are not allowed from Savings accounts"),
+        INSUFFICIENT_FUNDS("Insufficient funds or withdrawal not allowed"),
+        FAILED("The transfer could not be saved");
+
+        private final String message;
+
+        Outcome(String message) {
+            this.message = message;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    /**
+     * Why a transfer of the amount in thebe cannot go ahead whatever the balances are, or null
+     */
+    static Outcome check(Account fromAccount, Account toAccount, long thebe) {
+        if (fromAccount == null || toAccount == null) {
+            return Outcome.ACCOUNT_NOT_FOUND;
+        }
+        if (fromAccount.getAccountNumber().equals(toAccount.getAccountNumber())) {
+            return Outcome.SAME_ACCOUNT;
+        }
+        if (thebe <= 0) {
+            return Outcome.INVALID_AMOUNT;
+        }
+        if (fromAccount instanceof SavingsAccount) {
+            return Outcome.NOT_ALLOWED;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,171 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hash indexes over the customer keys that must be unique: email, individual ID number and
+ * business registration number. Keys are trimmed and case-folded, so "A@Bank.com " and
+ * "a@bank.com" are the same key. Lookups and registration checks are O(1).
+ *
+ * Built by the loader from the stored customers and kept in sync by Main on register,
+ * update and delete.
+ */
+public class UniqueKeyRegistry {
+
+    public enum Key {
+        EMAIL("Email"),
+        ID_NUMBER("ID number"),
+        REGISTRATION_NUMBER("Registration number");
+
+        private final String label;
+
+        Key(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final Map<Key, Map<String, String>> owners = new EnumMap<>(Key.class); // folded key -> customer ID
+    private final Map<String, Map<Key, String>> keysByCustomer = new ConcurrentHashMap<>();
+
+    public UniqueKeyRegistry() {
+        for (Key key : Key.values()) {
+            owners.put(key, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Index every customer. When stored data already holds a duplicate, the first customer
+     * keeps the key and the duplicate is reported.
+     */
+    public static UniqueKeyRegistry build(Collection<Customer> customers) {
+        UniqueKeyRegistry registry = new UniqueKeyRegistry();
+        int duplicates = 0;
+        for (Customer customer : customers) {
+            Key taken = registry.register(customer);
+            if (taken != null) {
+                duplicates++;
+                registry.registerAvailable(customer);
+            }
+        }
+        if (duplicates > 0) {
+            System.out.println("Unique key registry: " + duplicates + " customers share a key with an earlier customer");
+        }
+        return registry;
+    }
+
+    /**
+     * Trimmed, lower-cased form used as the index key; null for a missing or blank value
+     */
+    public static String fold(String value) {
+        if (value == null) return null;
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The unique keys a customer holds
+     */
+    public static Map<Key, String> keysOf(Customer customer) {
+        Map<Key, String> keys = new EnumMap<>(Key.class);
+        putFolded(keys, Key.EMAIL, customer.getEmail());
+        if (customer instanceof CustomerIndividual) {
+            putFolded(keys, Key.ID_NUMBER, ((CustomerIndividual) customer).getIdNumber());
+        } else if (customer instanceof CustomerBusiness) {
+            putFolded(keys, Key.REGISTRATION_NUMBER, ((CustomerBusiness) customer).getRegistrationNumber());
+        }
+        return keys;
+    }
+
+    private static void putFolded(Map<Key, String> keys, Key key, String value) {
+        String folded = fold(value);
+        if (folded != null) {
+            keys.put(key, folded);
+        }
+    }
+
+    // ---------------- LOOKUPS ----------------
+
+    /**
+     * ID of the customer holding a key, or null
+     */
+    public String findOwner(Key key, String value) {
+        String folded = fold(value);
+        return folded == null ? null : owners.get(key).get(folded);
+    }
+
+    /**
+     * True if no customer other than the given one holds the key
+     */
+    public boolean isAvailable(Key key, String value, String customerID) {
+        String owner = findOwner(key, value);
+        return owner == null || owner.equals(customerID);
+    }
+
+    /**
+     * First key of the customer that another customer already holds, or null
+     */
+    public synchronized Key findConflict(Customer customer) {
+        for (Map.Entry<Key, String> entry : keysOf(customer).entrySet()) {
+            String owner = owners.get(entry.getKey()).get(entry.getValue());
+            if (owner != null && !owner.equals(customer.getCustomerID())) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    // ---------------- UPDATES ----------------
+
+    /**
+     * Claim all of the customer's keys, replacing the keys it held before.
+     * Nothing changes if another customer holds one of them; that key is returned instead.
+     */
+    public synchronized Key register(Customer customer) {
+        Key conflict = findConflict(customer);
+        if (conflict != null) {
+            return conflict;
+        }
+        unregister(customer.getCustomerID());
+        Map<Key, String> keys = keysOf(customer);
+        for (Map.Entry<Key, String> entry : keys.entrySet()) {
+            owners.get(entry.getKey()).put(entry.getValue(), customer.getCustomerID());
+        }
+        keysByCustomer.put(customer.getCustomerID(), keys);
+        return null;
+    }
+
+    /**
+     * Claim only the keys nobody else holds; used when indexing data that already has duplicates
+     */
+    private synchronized void registerAvailable(Customer customer) {
+        Map<Key, String> keys = keysOf(customer);
+        keys.entrySet().removeIf(entry ->
+                owners.get(entry.getKey()).putIfAbsent(entry.getValue(), customer.getCustomerID()) != null);
+        keysByCustomer.put(customer.getCustomerID(), keys);
+    }
+
+    /**
+     * Release every key held by a customer
+     */
+    public synchronized void unregister(String customerID) {
+        Map<Key, String> keys = keysByCustomer.remove(customerID);
+        if (keys == null) return;
+        for (Map.Entry<Key, String> entry : keys.entrySet()) {
+            owners.get(entry.getKey()).remove(entry.getValue(), customerID);
+        }
+    }
+
+    public synchronized void clear() {
+        for (Map<String, String> index : owners.values()) {
+            index.clear();
+        }
+        keysByCustomer.clear();
+    }
+
+    public int size() {
+        return keysByCustomer.size();
+    }
+}
@@ -13,6 +13,7 @@ public class WithdrawController {
     @FXML private Label statusLabel;
     @FXML private TextField amountField;
     @FXML private TextField descriptionField;
+    @FXML private Button withdrawBtn;
 
     public void setAccount(Account account) {
         this.account = account;
@@ -56,16 +57,21 @@ public class WithdrawController {
         double amount = Double.parseDouble(amountField.getText());
         String description = descriptionField.getText().trim();
 
-        // Perform withdrawal
-        boolean success = performWithdrawal(amount, description);
-
-        if (success) {
-            showStatus("Withdrawal successful!", false);
-            clearForm();
-            updateAccountDisplay();
-        } else {
-            showWithdrawalError(amount);
-        }
+        // Perform withdrawal on the bank service thread
+        String withdrawDescription = description.isEmpty() ? "Withdrawal" : description;
+        showStatus("Processing withdrawal...", false);
+        BankService.whenDone(BankService.withdraw(account, amount, withdrawDescription), (success, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+            }
+            if (error == null && success) {
+                showStatus("Withdrawal successful!", false);
+                clearForm();
+                updateAccountDisplay();
+            } else {
+                showWithdrawalError(amount);
+            }
+        }, withdrawBtn, amountField, descriptionField);
     }
 
     @FXML
@@ -98,16 +104,6 @@ public class WithdrawController {
         return true;
     }
 
-    private boolean performWithdrawal(double amount, String description) {
-        try {
-            String withdrawDescription = description.isEmpty() ? "Withdrawal" : description;
-            return account.withdraw(amount, withdrawDescription);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
-        }
-    }
-
     private void showWithdrawalError(double amount) {
         String errorMessage = "Withdrawal failed: ";
 
@@ -0,0 +1,147 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of storage mutations.
+ * Every record is written and forced to disk before the mutation is considered done;
+ * the base text files are brought up to date later by a checkpoint.
+ *
+ * Record format (one line): sequence|crc|operation|payload
+ */
+public class WriteAheadLog {
+
+    public static class Record {
+        public final long sequence;
+        public final String operation;
+        public final String payload;
+
+        public Record(long sequence, String operation, String payload) {
+            this.sequence = sequence;
+            this.operation = operation;
+            this.payload = payload;
+        }
+    }
+
+    private final File file;
+    private FileChannel channel;
+    private long nextSequence = 1;
+    private int pendingRecords = 0;
+    private boolean damaged = false; // a failed append could not be cut off again
+
+    public WriteAheadLog(String path) throws IOException {
+        this.file = new File(path);
+        this.channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Append a record and force it to disk. Returns the record's sequence number.
+     * If the append fails, whatever part of it was written is cut off again: replay stops at the
+     * first torn record, so one left in the middle would hide every record after it. If that
+     * cannot be done either, later appends fail too until the log is truncated.
+     */
+    public synchronized long append(String operation, String payload) throws IOException {
+        if (damaged) {
+            throw new IOException("Write-ahead log ends in a torn record");
+        }
+        long sequence = nextSequence;
+        String body = operation + "|" + payload;
+        String line = sequence + "|" + checksum(body) + "|" + body + "\n";
+
+        ByteBuffer bytes = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        long end = channel.size();
+        try {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            try {
+                channel.truncate(end);
+                channel.force(false);
+            } catch (IOException truncateError) {
+                damaged = true;
+            }
+            throw e;
+        }
+        nextSequence++;
+        pendingRecords++;
+        return sequence;
+    }
+
+    /**
+     * Read all intact records. Reading stops at the first torn or corrupt record,
+     * which can only be the tail written during a crash.
+     */
+    public synchronized List<Record> readAll() throws IOException {
+        List<Record> records = new ArrayList<>();
+        if (!file.exists()) {
+            return records;
+        }
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\\|", 4);
+                if (parts.length < 4) break;
+                try {
+                    long sequence = Long.parseLong(parts[0]);
+                    String body = parts[2] + "|" + parts[3];
+                    if (Long.parseLong(parts[1]) != checksum(body)) {
+                        System.err.println("Write-ahead log: checksum mismatch at record " + sequence + ", ignoring tail");
+                        break;
+                    }
+                    records.add(new Record(sequence, parts[2], parts[3]));
+                    nextSequence = Math.max(nextSequence, sequence + 1);
+                } catch (NumberFormatException e) {
+                    System.err.println("Write-ahead log: malformed record, ignoring tail");
+                    break;
+                }
+            }
+        }
+        pendingRecords = records.size();
+        return records;
+    }
+
+    /**
+     * Discard all records once they have been folded into the base files
+     */
+    public synchronized void truncate() throws IOException {
+        channel.truncate(0);
+        channel.force(true);
+        pendingRecords = 0;
+        damaged = false;
+    }
+
+    /**
+     * Lock the log file until it is closed; false if another process holds it.
+     * Processes sharing a data directory each lock their own log.
+     */
+    public synchronized boolean tryLock() throws IOException {
+        return channel.tryLock() != null;
+    }
+
+    public synchronized int getPendingRecords() {
+        return pendingRecords;
+    }
+
+    public synchronized void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing write-ahead log: " + e.getMessage());
+        }
+    }
+
+    private static long checksum(String body) {
+        CRC32 crc = new CRC32();
+        crc.update(body.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}